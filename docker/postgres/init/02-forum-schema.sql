@@ -7,6 +7,9 @@
 SET timezone = 'Asia/Singapore';
 SET client_encoding = 'UTF8';
 
+-- 三元组索引扩展（支持中文等无空格分词文本的模糊搜索走索引）
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
 -- ================================================================
 -- 1. 论坛功能表
 -- ================================================================
@@ -24,6 +27,11 @@ CREATE TABLE IF NOT EXISTS contents (
     status VARCHAR(20) DEFAULT 'active',
     created_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    -- 全文检索向量（标题权重 A，正文权重 B），插入/更新时由数据库自动维护
+    search_vector tsvector GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', COALESCE(title, '')), 'A') ||
+        setweight(to_tsvector('simple', COALESCE(body_plain, '')), 'B')
+    ) STORED,
 
     CONSTRAINT fk_contents_parent FOREIGN KEY (parent_id) REFERENCES contents(content_id) ON DELETE CASCADE,
     CONSTRAINT fk_contents_reply_to FOREIGN KEY (reply_to) REFERENCES contents(content_id) ON DELETE SET NULL
@@ -93,6 +101,46 @@ CREATE TABLE IF NOT EXISTS user_content_relations (
     UNIQUE(user_id, content_id, relation_type_id)
     );
 
+-- 内容摘要表（列表查询读模型，每条内容一行，计数为普通列）
+-- 由 ForumPostService / ForumContentLikeService 的写路径维护
+CREATE TABLE IF NOT EXISTS post_summary (
+                                            content_id BIGINT PRIMARY KEY,
+                                            content_type VARCHAR(20) NOT NULL,
+    author_id BIGINT NOT NULL,
+    parent_id BIGINT,
+    status VARCHAR(20) DEFAULT 'active',
+    created_date TIMESTAMP NOT NULL,
+    view_count INTEGER NOT NULL DEFAULT 0,
+    like_count INTEGER NOT NULL DEFAULT 0,
+    reply_count INTEGER NOT NULL DEFAULT 0,
+    updated_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_post_summary_content FOREIGN KEY (content_id) REFERENCES contents(content_id) ON DELETE CASCADE
+    );
+
+-- 内容计数宽表（每条内容一行，替代 content_metrics 中的浏览/点赞/回复三项）
+-- 迁移期间与 content_metrics 双写，回填并校验一致后通过 forum.metrics.read-counters 切换读取
+CREATE TABLE IF NOT EXISTS content_counters (
+                                                content_id BIGINT PRIMARY KEY,
+                                                views INTEGER NOT NULL DEFAULT 0,
+                                                likes INTEGER NOT NULL DEFAULT 0,
+                                                replies INTEGER NOT NULL DEFAULT 0,
+                                                updated_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_content_counters_content FOREIGN KEY (content_id) REFERENCES contents(content_id) ON DELETE CASCADE
+    );
+
+-- 统计分片表（热点计数器，如 reply_count）
+-- 每次写入随机累加到一个槽位，并发写入不再争用同一行；读取时与 content_metrics 求和，
+-- 由定时任务合并回 content_metrics 和 post_summary
+CREATE TABLE IF NOT EXISTS content_metric_slots (
+                                                    content_id BIGINT NOT NULL,
+                                                    metric_id INTEGER NOT NULL,
+                                                    slot SMALLINT NOT NULL,
+                                                    delta INTEGER NOT NULL DEFAULT 0,
+                                                    PRIMARY KEY (content_id, metric_id, slot),
+    CONSTRAINT fk_metric_slots_content FOREIGN KEY (content_id) REFERENCES contents(content_id) ON DELETE CASCADE,
+    CONSTRAINT fk_metric_slots_metric FOREIGN KEY (metric_id) REFERENCES metric_definitions(metric_id) ON DELETE CASCADE
+    );
+
 -- ================================================================
 -- 3. 创建索引
 -- ================================================================
@@ -106,6 +154,13 @@ CREATE INDEX IF NOT EXISTS idx_contents_status ON contents(status);
 CREATE INDEX IF NOT EXISTS idx_contents_created ON contents(created_date DESC);
 CREATE INDEX IF NOT EXISTS idx_contents_type_status ON contents(content_type, status);
 CREATE INDEX IF NOT EXISTS idx_contents_reply_to ON contents(reply_to);
+-- 按作者流式导出（按 content_id 顺序读取，无需排序）
+CREATE INDEX IF NOT EXISTS idx_contents_author_content ON contents(author_id, content_id);
+
+-- 搜索索引（全文检索 + 三元组模糊匹配）
+CREATE INDEX IF NOT EXISTS idx_contents_search_vector ON contents USING GIN (search_vector);
+CREATE INDEX IF NOT EXISTS idx_contents_title_trgm ON contents USING GIN (title gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_contents_body_plain_trgm ON contents USING GIN (body_plain gin_trgm_ops);
 
 -- 属性查询索引
 CREATE INDEX IF NOT EXISTS idx_content_attrs_content ON content_attributes(content_id);
@@ -115,6 +170,14 @@ CREATE INDEX IF NOT EXISTS idx_content_attrs_attr ON content_attributes(attr_id)
 CREATE INDEX IF NOT EXISTS idx_content_metrics_content ON content_metrics(content_id);
 CREATE INDEX IF NOT EXISTS idx_content_metrics_metric ON content_metrics(metric_id);
 
+-- 摘要表索引（列表 / 游标分页按 created_date + content_id 定位）
+CREATE INDEX IF NOT EXISTS idx_post_summary_active_posts ON post_summary(created_date DESC, content_id DESC)
+    WHERE content_type = 'post' AND status = 'active';
+CREATE INDEX IF NOT EXISTS idx_post_summary_parent ON post_summary(parent_id, created_date, content_id)
+    WHERE status = 'active';
+CREATE INDEX IF NOT EXISTS idx_post_summary_author_posts ON post_summary(author_id, created_date DESC, content_id DESC)
+    WHERE content_type = 'post' AND status = 'active';
+
 -- 关系查询索引
 CREATE INDEX IF NOT EXISTS idx_relations_user ON user_content_relations(user_id);
 CREATE INDEX IF NOT EXISTS idx_relations_content ON user_content_relations(content_id);
@@ -158,6 +221,39 @@ INSERT INTO relationship_types (type_name, description) VALUES
                                                             ('view', '用户浏览内容')
     ON CONFLICT (type_name) DO NOTHING;
 
+-- 回填内容摘要（已有数据）
+INSERT INTO post_summary (content_id, content_type, author_id, parent_id, status, created_date,
+                          view_count, like_count, reply_count)
+SELECT
+    c.content_id,
+    c.content_type,
+    c.author_id,
+    c.parent_id,
+    c.status,
+    c.created_date,
+    COALESCE((SELECT cm.metric_value FROM content_metrics cm
+              JOIN metric_definitions md ON cm.metric_id = md.metric_id
+              WHERE cm.content_id = c.content_id AND md.metric_name = 'view_count'), 0),
+    (SELECT COUNT(*) FROM user_content_relations ucr
+     WHERE ucr.content_id = c.content_id
+       AND ucr.relation_type_id = (SELECT type_id FROM relationship_types WHERE type_name = 'like')),
+    (SELECT COUNT(*) FROM contents r
+     WHERE r.parent_id = c.content_id AND r.status = 'active')
+FROM contents c
+    ON CONFLICT (content_id) DO NOTHING;
+
+-- 回填内容计数宽表（已有数据）
+INSERT INTO content_counters (content_id, views, likes, replies)
+SELECT
+    cm.content_id,
+    COALESCE(SUM(cm.metric_value) FILTER (WHERE md.metric_name = 'view_count'), 0),
+    COALESCE(SUM(cm.metric_value) FILTER (WHERE md.metric_name = 'like_count'), 0),
+    COALESCE(SUM(cm.metric_value) FILTER (WHERE md.metric_name = 'reply_count'), 0)
+FROM content_metrics cm
+    JOIN metric_definitions md ON cm.metric_id = md.metric_id
+GROUP BY cm.content_id
+    ON CONFLICT (content_id) DO NOTHING;
+
 -- ================================================================
 -- 6. 创建视图和函数
 -- ================================================================
@@ -0,0 +1,30 @@
+package com.sg.nusiss.common.transaction;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 事务相关的工具方法
+ */
+public final class TransactionUtils {
+
+    private TransactionUtils() {
+    }
+
+    /**
+     * 在当前事务提交后执行，回滚时不执行；没有事务时立即执行
+     * 用于缓存失效、内存排行等事务外的副作用，避免并发读取把提交前的数据放回缓存
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.sg.nusiss.forum.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * 带验证结果缓存的 JwtDecoder
+ *
+ * Spring Security 的 Bearer Token 过滤器和 ForumAuthInterceptor 都通过 JwtDecoder 解析 Token，
+ * 每次都要做 RS256 签名验证。验证通过的 Token 按 SHA-256 摘要缓存（不保存原始 Token），
+ * 过期时间取 Token 的 exp 与 max-ttl 中较早者，同一会话的后续请求不再重复验签。
+ * 验证失败的 Token 不缓存，每次都会重新验证。
+ *
+ * 指标：forum.jwt.verify（实际验签耗时）、cache.gets{cache=forum.jwt}（命中率）
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+    private final Duration maxTtl;
+    private final Cache<String, Jwt> cache;
+    private final Timer verifyTimer;
+
+    public CachingJwtDecoder(JwtDecoder delegate, boolean cacheEnabled, long maxSize,
+                             Duration maxTtl, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxTtl = maxTtl;
+        this.verifyTimer = Timer.builder("forum.jwt.verify")
+                .description("JWT 签名验证耗时（不含缓存命中）")
+                .register(meterRegistry);
+
+        if (cacheEnabled) {
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfter(new Expiry<String, Jwt>() {
+                        @Override
+                        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+                            return remainingTtl(jwt).toNanos();
+                        }
+
+                        @Override
+                        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+                            return remainingTtl(jwt).toNanos();
+                        }
+
+                        @Override
+                        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+                            return currentDuration;
+                        }
+                    })
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "forum.jwt");
+        } else {
+            this.cache = null;
+        }
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        if (cache == null || token == null) {
+            return verify(token);
+        }
+
+        String key = digest(token);
+        Jwt cached = cache.getIfPresent(key);
+        if (cached != null && !isExpired(cached)) {
+            return cached;
+        }
+
+        Jwt jwt = verify(token);
+        if (!remainingTtl(jwt).isZero()) {
+            cache.put(key, jwt);
+        }
+        return jwt;
+    }
+
+    private Jwt verify(String token) {
+        long start = System.nanoTime();
+        try {
+            return delegate.decode(token);
+        } finally {
+            verifyTimer.record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * 缓存剩余有效期：min(exp - now, maxTtl)，已过期时为 0
+     */
+    private Duration remainingTtl(Jwt jwt) {
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt == null) {
+            return maxTtl;
+        }
+        Duration remaining = Duration.between(Instant.now(), expiresAt);
+        if (remaining.isNegative()) {
+            return Duration.ZERO;
+        }
+        return remaining.compareTo(maxTtl) < 0 ? remaining : maxTtl;
+    }
+
+    private static boolean isExpired(Jwt jwt) {
+        return jwt.getExpiresAt() != null && !Instant.now().isBefore(jwt.getExpiresAt());
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.sg.nusiss.forum.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -11,6 +12,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.InputStream;
 import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
 
 @Slf4j
 @Configuration
@@ -19,15 +21,28 @@ public class JwtConfig {
     @Value("${rsa.public-key}")
     private Resource publicKeyResource;
 
+    @Value("${forum.jwt-cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${forum.jwt-cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${forum.jwt-cache.max-ttl-seconds:600}")
+    private long cacheMaxTtlSeconds;
+
+    /**
+     * RS256 解码器，外层包装验证结果缓存（Spring Security 过滤器和 ForumJwtUtil 共用）
+     */
     @Bean
-    public JwtDecoder jwtDecoder() {
+    public JwtDecoder jwtDecoder(MeterRegistry meterRegistry) {
         try {
             log.info("加载公钥文件: {}", publicKeyResource.getFilename());
 
             try (InputStream pubStream = publicKeyResource.getInputStream()) {
                 RSAPublicKey publicKey = (RSAPublicKey) RsaKeyConverters.x509().convert(pubStream);
                 log.info("公钥加载成功");
-                return NimbusJwtDecoder.withPublicKey(publicKey).build();
+                return new CachingJwtDecoder(NimbusJwtDecoder.withPublicKey(publicKey).build(),
+                        cacheEnabled, cacheMaxSize, Duration.ofSeconds(cacheMaxTtlSeconds), meterRegistry);
             }
         } catch (Exception e) {
             log.error("加载公钥失败", e);
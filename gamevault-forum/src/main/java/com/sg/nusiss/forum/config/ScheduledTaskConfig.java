@@ -1,5 +1,10 @@
 package com.sg.nusiss.forum.config;
 
+import com.sg.nusiss.forum.service.forum.ContentLikeStore;
+import com.sg.nusiss.forum.service.forum.ForumContentLikeService;
+import com.sg.nusiss.forum.service.forum.HotPostRanker;
+import com.sg.nusiss.forum.service.forum.ReplyCountCounter;
+import com.sg.nusiss.forum.service.forum.ViewCountBuffer;
 import com.sg.nusiss.forum.service.forum.ViewTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,8 +27,24 @@ public class ScheduledTaskConfig {
     @Autowired
     private ViewTracker viewTracker;
 
+    @Autowired
+    private ViewCountBuffer viewCountBuffer;
+
+    @Autowired
+    private ContentLikeStore contentLikeStore;
+
+    @Autowired
+    private ForumContentLikeService contentLikeService;
+
+    @Autowired
+    private HotPostRanker hotPostRanker;
+
+    @Autowired
+    private ReplyCountCounter replyCountCounter;
+
     /**
-     * 每10分钟清理一次过期的浏览记录
+     * 每10分钟释放一次过期浏览记录占用的内存
+     * （过期记录在访问时已按分代跳过，这里不做全量扫描）
      */
     @Scheduled(fixedRate = 600000) // 10分钟 = 600,000毫秒
     public void cleanExpiredViewRecords() {
@@ -40,4 +61,68 @@ public class ScheduledTaskConfig {
             logger.error("清理过期浏览记录失败", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 定期将浏览量缓冲批量写入数据库
+     * 刷新间隔即浏览量在数据库中的最大滞后时间
+     */
+    @Scheduled(fixedDelayString = "${forum.view-count.max-staleness-ms:5000}")
+    public void flushViewCounts() {
+        try {
+            viewCountBuffer.flush();
+        } catch (Exception e) {
+            logger.error("刷新浏览量缓冲失败", e);
+        }
+    }
+
+    /**
+     * 定期将点赞操作批量写入 user_content_relations
+     */
+    @Scheduled(fixedDelayString = "${forum.like.flush-interval-ms:1000}")
+    public void flushLikes() {
+        try {
+            contentLikeStore.flush();
+        } catch (Exception e) {
+            logger.error("持久化点赞操作失败", e);
+        }
+    }
+
+    /**
+     * 点赞数对账：按关系表重算最近写入过的内容
+     */
+    @Scheduled(fixedDelayString = "${forum.like.reconcile-interval-ms:60000}")
+    public void reconcileLikeCounts() {
+        try {
+            int reconciled = contentLikeService.reconcileLikeCounts();
+            if (reconciled > 0) {
+                logger.debug("点赞数对账完成 - 内容数: {}", reconciled);
+            }
+        } catch (Exception e) {
+            logger.error("点赞数对账失败", e);
+        }
+    }
+
+    /**
+     * 定期把回复数分片槽位合并回 content_metrics / post_summary
+     */
+    @Scheduled(fixedDelayString = "${forum.reply-count.compact-interval-ms:2000}")
+    public void compactReplyCounts() {
+        try {
+            replyCountCounter.compact();
+        } catch (Exception e) {
+            logger.error("合并回复数分片失败", e);
+        }
+    }
+
+    /**
+     * 重算热门帖子排行（启动后立即执行一次）
+     */
+    @Scheduled(fixedDelayString = "${forum.hot.recompute-interval-ms:600000}")
+    public void recomputeHotPosts() {
+        try {
+            hotPostRanker.recompute();
+        } catch (Exception e) {
+            logger.error("重算热门帖子排行失败", e);
+        }
+    }
+}
@@ -16,13 +16,20 @@ import com.sg.nusiss.forum.dto.PostResponseDTO;
 import com.sg.nusiss.forum.dto.ReplyResponseDTO;
 import com.sg.nusiss.forum.entity.ForumContent;
 import com.sg.nusiss.forum.service.forum.ForumContentLikeService;
+import com.sg.nusiss.forum.service.forum.ForumExportService;
+import com.sg.nusiss.forum.service.forum.ReplyThreadLoader;
 import com.sg.nusiss.forum.service.forum.ForumPostService;
 import com.sg.nusiss.forum.service.forum.ViewTracker;
 import com.sg.nusiss.forum.service.user.UserService;
 
 import jakarta.validation.Valid;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import com.sg.nusiss.forum.annotation.RequireForumAuth;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -41,22 +48,32 @@ public class ForumPostController {
     private final ForumPostService postService;
     private final UserService userService;
     private final ForumContentLikeService contentLikeService;
+    private final ReplyThreadLoader replyThreadLoader;
     private final ViewTracker viewTracker;
+    private final ForumExportService exportService;
     private static final Logger logger = LoggerFactory.getLogger(ForumPostController.class);
     /**
      * 获取帖子列表（分页）
+     * 传入 cursor 参数（首页传空字符串）时使用游标分页，响应中返回 nextCursor 而不是 totalCount
      */
     @GetMapping
     public BaseResponse<?> getPostList(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
             HttpServletRequest request) {  // ✅ 添加参数
 
-        log.info("获取帖子列表 - 页码: {}, 每页大小: {}", page, size);
+        log.info("获取帖子列表 - 页码: {}, 每页大小: {}, 游标: {}", page, size, cursor);
 
         try {
             Long currentUserId = getCurrentUserIdOrNull(request);  // ✅ 传入request
 
+            if (cursor != null) {
+                List<ForumContent> posts = postService.getPostListByCursor(cursor, size, currentUserId);
+                return ResultUtils.success(buildCursorResponse("posts", convertToResponseDTOs(posts),
+                        postService.getNextCursor(posts, size), size));
+            }
+
             List<ForumContent> posts = postService.getPostList(page, size, currentUserId);
             int totalCount = postService.getPostCount();
 
@@ -70,12 +87,43 @@ public class ForumPostController {
 
             return ResultUtils.success(response);
 
+        } catch (IllegalArgumentException e) {
+            log.warn("参数错误: {}", e.getMessage());
+            return ResultUtils.error(40000, e.getMessage());
+
         } catch (Exception e) {
             log.error("获取帖子列表失败", e);
             return ResultUtils.error(50000, "获取帖子列表失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 获取热门帖子（按时间衰减热度排序）
+     */
+    @GetMapping("/hot")
+    public BaseResponse<?> getHotPosts(
+            @RequestParam(defaultValue = "20") int size,
+            HttpServletRequest request) {
+
+        log.info("获取热门帖子 - 数量: {}", size);
+
+        try {
+            Long currentUserId = getCurrentUserIdOrNull(request);
+
+            List<ForumContent> posts = postService.getHotPosts(size, currentUserId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("posts", convertToResponseDTOs(posts));
+            response.put("pageSize", size);
+
+            return ResultUtils.success(response);
+
+        } catch (Exception e) {
+            log.error("获取热门帖子失败", e);
+            return ResultUtils.error(50000, "获取热门帖子失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 根据ID获取帖子详情
      */
@@ -195,6 +243,7 @@ public class ForumPostController {
             response.put("currentPage", page);
             response.put("pageSize", size);
             response.put("totalCount", totalCount);
+            response.put("totalCountCapped", postService.isSearchCountCapped(keyword, totalCount));
 
             return ResultUtils.success(response);
 
@@ -352,6 +401,7 @@ public class ForumPostController {
             @PathVariable(value = "userId") Long userId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
             HttpServletRequest request) {  // ✅ 添加参数
 
         log.info("获取用户帖子列表 - 用户ID: {}", userId);
@@ -359,6 +409,12 @@ public class ForumPostController {
         try {
             Long currentUserId = getCurrentUserIdOrNull(request);  // ✅ 传入request
 
+            if (cursor != null) {
+                List<ForumContent> posts = postService.getPostsByAuthorIdByCursor(userId, cursor, size, currentUserId);
+                return ResultUtils.success(buildCursorResponse("posts", convertToResponseDTOs(posts),
+                        postService.getNextCursor(posts, size), size));
+            }
+
             List<ForumContent> posts = postService.getPostsByAuthorId(userId, page, size, currentUserId);
             int totalCount = postService.getPostCountByAuthorId(userId);
 
@@ -372,12 +428,68 @@ public class ForumPostController {
 
             return ResultUtils.success(response);
 
+        } catch (IllegalArgumentException e) {
+            log.warn("参数错误: {}", e.getMessage());
+            return ResultUtils.error(40000, e.getMessage());
+
         } catch (Exception e) {
             log.error("获取用户帖子列表失败", e);
             return ResultUtils.error(50000, "获取用户帖子列表失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 导出当前用户的全部帖子和回复（流式写出，format: ndjson / csv）
+     */
+    @GetMapping("/export")
+    @RequireForumAuth
+    public void exportMyContents(
+            @RequestParam(defaultValue = "ndjson") String format,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
+        Long userId = (Long) request.getAttribute("userId");
+        if (userId == null) {
+            response.sendError(HttpStatus.UNAUTHORIZED.value(), "请先登录");
+            return;
+        }
+
+        ForumExportService.Format exportFormat;
+        try {
+            exportFormat = ForumExportService.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+            return;
+        }
+
+        log.info("导出用户内容 - 用户ID: {}, 格式: {}", userId, exportFormat);
+
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("forum-export-" + userId + "." + exportFormat.getExtension())
+                .build()
+                .toString());
+
+        try {
+            exportService.exportByAuthor(userId, exportFormat, response.getOutputStream());
+        } catch (IllegalStateException e) {
+            // 并发数已满，此时尚未写出任何内容
+            log.warn("导出用户内容被拒绝 - 用户ID: {}, 原因: {}", userId, e.getMessage());
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), e.getMessage());
+            }
+        } catch (Exception e) {
+            log.error("导出用户内容失败 - 用户ID: {}", userId, e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value(), "导出失败");
+            }
+            // 已开始写出时只能中断响应，客户端会收到不完整的文件
+        }
+    }
+
     /**
      * 获取帖子的回复列表
      */
@@ -386,30 +498,22 @@ public class ForumPostController {
             @PathVariable(value = "postId") Long postId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
             HttpServletRequest request) {  // ✅ 添加参数
         try {
             Long currentUserId = getCurrentUserIdOrNull(request);  // ✅ 传入request
 
-            List<ForumContent> replies = postService.getRepliesByPostId(postId, page, size, currentUserId);
+            boolean cursorMode = cursor != null;
+            List<ForumContent> replies = cursorMode
+                    ? postService.getRepliesByPostIdByCursor(postId, cursor, size, currentUserId)
+                    : postService.getRepliesByPostId(postId, page, size, currentUserId);
 
-            // 转换为 DTO 列表
-            List<ReplyResponseDTO> replyDTOs = new ArrayList<>();
+            // 转换为 DTO 列表（作者和被回复用户批量解析）
+            List<ReplyResponseDTO> replyDTOs = replyThreadLoader.toResponseDTOs(replies);
 
-            for (ForumContent reply : replies) {
-                // 获取回复作者信息
-                UserDTO author = userService.getUserById(reply.getAuthorId());
-
-                // 如果是楼中楼回复，获取被回复用户的信息
-                UserDTO replyToUser = null;
-                if (reply.getReplyTo() != null) {
-                    ForumContent targetReply = postService.getContentById(reply.getReplyTo());
-                    if (targetReply != null) {
-                        replyToUser = userService.getUserById(targetReply.getAuthorId());
-                    }
-                }
-
-                ReplyResponseDTO dto = ReplyResponseDTO.fromContentAndUsers(reply, author, replyToUser);
-                replyDTOs.add(dto);
+            if (cursorMode) {
+                return ResultUtils.success(buildCursorResponse("replies", replyDTOs,
+                        postService.getNextCursor(replies, size), size));
             }
 
             int total = postService.getReplyCountByPostId(postId);
@@ -422,12 +526,49 @@ public class ForumPostController {
 
             return ResultUtils.success(response);
 
+        } catch (IllegalArgumentException e) {
+            log.warn("参数错误: {}", e.getMessage());
+            return ResultUtils.error(40000, e.getMessage());
+
         } catch (Exception e) {
             log.error("获取回复列表失败", e);
             return ResultUtils.error(50000, "获取回复列表失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 获取帖子的回复树（根回复分页，楼中楼嵌套在 children 中）
+     */
+    @GetMapping("/{postId}/replies/thread")
+    public BaseResponse<?> getReplyThread(
+            @PathVariable(value = "postId") Long postId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            HttpServletRequest request) {
+        try {
+            Long currentUserId = getCurrentUserIdOrNull(request);
+
+            List<ReplyResponseDTO> thread = replyThreadLoader.loadThread(postId, page, size, currentUserId);
+            int total = replyThreadLoader.countRootReplies(postId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("replies", thread);
+            response.put("total", total);
+            response.put("page", page);
+            response.put("size", size);
+
+            return ResultUtils.success(response);
+
+        } catch (IllegalArgumentException e) {
+            log.warn("参数错误: {}", e.getMessage());
+            return ResultUtils.error(40000, e.getMessage());
+
+        } catch (Exception e) {
+            log.error("获取回复树失败", e);
+            return ResultUtils.error(50000, "获取回复树失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 创建回复
      * POST /api/forum/posts/{postId}/replies
@@ -599,6 +740,18 @@ public class ForumPostController {
         }
     }
 
+    /**
+     * 构建游标分页响应
+     */
+    private Map<String, Object> buildCursorResponse(String listKey, List<?> items, String nextCursor, int size) {
+        Map<String, Object> response = new HashMap<>();
+        response.put(listKey, items);
+        response.put("pageSize", size);
+        response.put("nextCursor", nextCursor);
+        response.put("hasMore", nextCursor != null);
+        return response;
+    }
+
     /**
      * 转换为响应 DTO 列表
      */
@@ -24,6 +24,7 @@ public class PostResponseDTO {
     private Integer likeCount;
     private Integer replyCount;
     private Boolean isLiked;
+    private String highlight;
     private LocalDateTime createdDate;
     private LocalDateTime updatedDate;
 
@@ -46,6 +47,7 @@ public class PostResponseDTO {
         dto.likeCount = content.getLikeCount();
         dto.replyCount = content.getReplyCount();
         dto.isLiked = content.getIsLikedByCurrentUser();
+        dto.highlight = content.getHighlight();
         return dto;
     }
 
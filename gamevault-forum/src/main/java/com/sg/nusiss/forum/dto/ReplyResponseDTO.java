@@ -2,9 +2,11 @@ package com.sg.nusiss.forum.dto;
 
 import com.sg.nusiss.forum.entity.ForumContent;
 import com.sg.nusiss.common.dto.UserDTO;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 回复响应数据传输对象
@@ -27,6 +29,9 @@ public class ReplyResponseDTO {
     private LocalDateTime createdDate;
     private LocalDateTime updatedDate;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<ReplyResponseDTO> children;  // 楼中楼回复（仅树形结构返回时设置）
+
     public ReplyResponseDTO() {}
 
     /**
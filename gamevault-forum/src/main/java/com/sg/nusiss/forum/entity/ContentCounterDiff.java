@@ -0,0 +1,30 @@
+package com.sg.nusiss.forum.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 统计数据迁移校验结果
+ * 同一内容在 content_metrics 和 content_counters 中不一致的统计值（某一侧缺行时该侧全为 null）
+ */
+@Setter
+@Getter
+public class ContentCounterDiff {
+    private Long contentId;
+    private Integer eavViews;
+    private Integer eavLikes;
+    private Integer eavReplies;
+    private Integer counterViews;
+    private Integer counterLikes;
+    private Integer counterReplies;
+
+    @Override
+    public String toString() {
+        return "ContentCounterDiff{" +
+                "contentId=" + contentId +
+                ", views=" + eavViews + "/" + counterViews +
+                ", likes=" + eavLikes + "/" + counterLikes +
+                ", replies=" + eavReplies + "/" + counterReplies +
+                '}';
+    }
+}
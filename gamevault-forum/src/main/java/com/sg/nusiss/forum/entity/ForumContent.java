@@ -26,6 +26,7 @@ public class ForumContent {
     private Boolean isLikedByCurrentUser;
     private String authorName;      // 作者用户名 (非数据库字段)
     private String authorAvatar;
+    private String highlight;       // 搜索高亮摘要 (非数据库字段)
     // 默认构造函数
     public ForumContent() {}
 
@@ -87,6 +88,14 @@ public class ForumContent {
         this.authorAvatar = authorAvatar;
     }
 
+    public String getHighlight() {
+        return highlight;
+    }
+
+    public void setHighlight(String highlight) {
+        this.highlight = highlight;
+    }
+
     public Long getContentId() {
         return contentId;
     }
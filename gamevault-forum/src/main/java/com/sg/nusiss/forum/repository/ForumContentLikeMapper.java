@@ -101,6 +101,18 @@ public interface ForumContentLikeMapper {
 
     // ==================== 批量操作 ====================
 
+    /**
+     * 批量插入点赞关系，已存在的关系和不存在或已删除的内容会被忽略（可重复执行）
+     */
+    int batchInsertIgnore(@Param("relations") List<UserContentRelation> relations,
+                          @Param("relationTypeId") Integer relationTypeId);
+
+    /**
+     * 批量删除点赞关系（可重复执行）
+     */
+    int batchDelete(@Param("relations") List<UserContentRelation> relations,
+                    @Param("relationTypeId") Integer relationTypeId);
+
     /**
      * 删除某内容的所有点赞
      */
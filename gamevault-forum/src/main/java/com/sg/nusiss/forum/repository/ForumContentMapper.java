@@ -2,8 +2,10 @@ package com.sg.nusiss.forum.repository;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 import com.sg.nusiss.forum.entity.ForumContent;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -35,6 +37,16 @@ public interface ForumContentMapper {
      */
     int softDelete(@Param("contentId") Long contentId);
 
+    /**
+     * 内容是否存在且未删除
+     */
+    boolean existsActive(@Param("contentId") Long contentId);
+
+    /**
+     * 批量筛选存在且未删除的内容ID
+     */
+    List<Long> findActiveContentIds(@Param("contentIds") List<Long> contentIds);
+
     // ==================== 帖子相关查询 ====================
 
     /**
@@ -44,6 +56,31 @@ public interface ForumContentMapper {
      */
     List<ForumContent> findActivePosts(@Param("offset") int offset, @Param("limit") int limit);
 
+    /**
+     * 查询活跃帖子（游标分页）
+     * 按 (created_date, content_id) 倒序，cursorDate/cursorId 为空时返回第一页
+     */
+    List<ForumContent> findActivePostsByCursor(@Param("cursorDate") LocalDateTime cursorDate,
+                                               @Param("cursorId") Long cursorId,
+                                               @Param("limit") int limit);
+
+    /**
+     * 根据ID批量查询活跃帖子（不保证顺序）
+     */
+    List<ForumContent> findActivePostsByIds(@Param("contentIds") List<Long> contentIds);
+
+    /**
+     * 查询热门排行候选帖子（只返回ID、发帖时间和计数）
+     * 按 活跃度 × 2^((发帖时间 - since) / 半衰期) 倒序
+     */
+    List<ForumContent> findHotCandidates(@Param("since") LocalDateTime since,
+                                         @Param("halfLifeSeconds") double halfLifeSeconds,
+                                         @Param("postWeight") double postWeight,
+                                         @Param("viewWeight") double viewWeight,
+                                         @Param("likeWeight") double likeWeight,
+                                         @Param("replyWeight") double replyWeight,
+                                         @Param("limit") int limit);
+
     /**
      * 统计活跃帖子总数
      */
@@ -55,7 +92,7 @@ public interface ForumContentMapper {
     List<ForumContent> findPostsByAuthor(@Param("authorId") Long authorId);
 
     /**
-     * 搜索帖子（按标题和内容）
+     * 搜索帖子（全文检索，按相关度排序，附带高亮摘要）
      * @param keyword 搜索关键词
      * @param offset 偏移量
      * @param limit 限制数量
@@ -66,8 +103,9 @@ public interface ForumContentMapper {
 
     /**
      * 统计搜索结果数量
+     * @param cap 统计上限，结果等于 cap 时表示实际数量可能更多
      */
-    int countSearchPosts(@Param("keyword") String keyword);
+    int countSearchPosts(@Param("keyword") String keyword, @Param("cap") int cap);
 
     // ==================== 层级结构查询 ====================
 
@@ -80,11 +118,43 @@ public interface ForumContentMapper {
             @Param("limit") int limit
     );
 
+    /**
+     * 查询子内容（回复）- 游标分页
+     * 按 (created_date, content_id) 正序，cursorDate/cursorId 为空时返回第一页
+     */
+    List<ForumContent> findChildrenByCursor(
+            @Param("parentId") Long parentId,
+            @Param("cursorDate") LocalDateTime cursorDate,
+            @Param("cursorId") Long cursorId,
+            @Param("limit") int limit
+    );
+
     /**
      * 统计子内容数量
      */
     int countChildren(@Param("parentId") Long parentId);
 
+    /**
+     * 查询回复树：一页根回复及其全部楼中楼回复
+     * 根回复为 reply_to 为空或目标已删除的活跃回复（已删除回复下的楼中楼作为根回复返回）；
+     * 结果按 (created_date, content_id) 正序
+     */
+    List<ForumContent> findReplyThread(
+            @Param("parentId") Long parentId,
+            @Param("offset") int offset,
+            @Param("limit") int limit
+    );
+
+    /**
+     * 统计根回复数量（reply_to 为空或目标已删除的活跃回复）
+     */
+    int countRootReplies(@Param("parentId") Long parentId);
+
+    /**
+     * 根据ID批量查询活跃内容（帖子或回复，不保证顺序）
+     */
+    List<ForumContent> findActiveByIds(@Param("contentIds") List<Long> contentIds);
+
     // ==================== 统计相关 ====================
 
     /**
@@ -128,8 +198,24 @@ public interface ForumContentMapper {
             @Param("size") int size
     );
 
+    /**
+     * 查询用户的活跃帖子（游标分页）
+     */
+    List<ForumContent> selectActiveByAuthorIdByCursor(
+            @Param("authorId") Long authorId,
+            @Param("cursorDate") LocalDateTime cursorDate,
+            @Param("cursorId") Long cursorId,
+            @Param("size") int size
+    );
+
     /**
      * 统计用户的活跃帖子数（未删除）
      */
     int countActiveByAuthorId(@Param("authorId") Long authorId);
-}
\ No newline at end of file
+
+    /**
+     * 流式读取作者的全部内容（帖子和回复，含已删除/隐藏），按内容ID升序
+     * 必须在事务中遍历（PostgreSQL 只在非自动提交时按 fetchSize 分批读取），遍历结束后关闭
+     */
+    Cursor<ForumContent> streamByAuthorId(@Param("authorId") Long authorId);
+}
@@ -2,25 +2,25 @@ package com.sg.nusiss.forum.repository;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import com.sg.nusiss.forum.entity.ContentCounterDiff;
 import com.sg.nusiss.forum.entity.ContentMetric;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 统计 Mapper 接口
  * 处理浏览量、点赞数等统计数据
+ *
+ * view_count / like_count / reply_count 同时写入 content_metrics 和 content_counters 宽表，
+ * 读取哪张表由 forum.metrics.read-counters 决定（回填并校验后切换）
  */
 @Mapper
 public interface ForumMetricMapper {
 
     // ==================== 基础操作 ====================
 
-    /**
-     * 插入或更新统计值
-     */
-    int insertOrUpdate(ContentMetric contentMetric);
-
     /**
      * 增加统计值
      * @param contentId 内容ID
@@ -31,6 +31,38 @@ public interface ForumMetricMapper {
                         @Param("metricName") String metricName,
                         @Param("increment") int increment);
 
+    /**
+     * 增加分片槽位的值（热点计数器使用，写入分散到多个槽位以避免行锁竞争）
+     * 读取统计值时会与槽位之和合并
+     * @param slot 槽位编号（0 ~ 槽位数-1）
+     */
+    int incrementMetricSlot(@Param("contentId") Long contentId,
+                            @Param("metricName") String metricName,
+                            @Param("slot") int slot,
+                            @Param("increment") int increment);
+
+    /**
+     * 删除指定统计的全部分片槽位并返回按内容汇总的增量（需在事务中与合并写入一起执行）
+     * @return 每个内容一行，增量在 metricValue 中
+     */
+    List<ContentMetric> drainMetricSlots(@Param("metricName") String metricName);
+
+    /**
+     * 批量增加统计值（单条多行 upsert）
+     * 不存在的内容ID会被忽略
+     * @param deltas Map<contentId, 增量>
+     */
+    int batchIncrementMetric(@Param("metricName") String metricName,
+                             @Param("deltas") Map<Long, Long> deltas);
+
+    /**
+     * 按关系表重新计算统计值（如 like_count = 点赞关系数），可重复执行
+     * 不存在的内容ID会被忽略
+     */
+    int recountRelationMetric(@Param("metricName") String metricName,
+                              @Param("relationTypeId") Integer relationTypeId,
+                              @Param("contentIds") List<Long> contentIds);
+
     /**
      * 设置统计值
      */
@@ -52,18 +84,57 @@ public interface ForumMetricMapper {
      */
     Map<String, Integer> getContentMetrics(@Param("contentId") Long contentId);
 
+    /**
+     * 批量获取多个内容的统计行
+     */
+    List<ContentMetric> findBatchMetrics(@Param("contentIds") List<Long> contentIds,
+                                         @Param("metricName") String metricName);
+
     /**
      * 批量获取多个内容的统计数据
      * @param contentIds 内容ID列表
      * @param metricName 统计类型名称
-     * @return Map<contentId, metricValue>
+     * @return Map<contentId, metricValue>（没有统计行的内容不包含在内）
      */
-    Map<Long, Integer> getBatchMetrics(@Param("contentIds") List<Long> contentIds,
-                                       @Param("metricName") String metricName);
+    default Map<Long, Integer> getBatchMetrics(List<Long> contentIds, String metricName) {
+        Map<Long, Integer> result = new HashMap<>();
+        if (contentIds == null || contentIds.isEmpty()) {
+            return result;
+        }
+        for (ContentMetric metric : findBatchMetrics(contentIds, metricName)) {
+            result.put(metric.getContentId(), metric.getMetricValue());
+        }
+        return result;
+    }
 
     /**
-     * 查询热门内容（按统计值排序）
+     * 查询热门内容（按统计值排序，包含尚未合并的分片增量）
      */
     List<Long> findTopContentsByMetric(@Param("metricName") String metricName,
                                        @Param("limit") int limit);
-}
\ No newline at end of file
+
+    // ==================== 宽表迁移 ====================
+
+    /**
+     * 按 content_id 顺序取 afterId 之后有统计行的内容ID（回填/校验分批用）
+     */
+    List<Long> findMetricContentIds(@Param("afterId") Long afterId,
+                                    @Param("limit") int limit);
+
+    /**
+     * 锁定 content_counters，阻塞并发写入直到当前事务结束（只读查询不受影响）
+     */
+    void lockCountersForBackfill();
+
+    /**
+     * 用 content_metrics 的值覆盖 (afterId, toId] 范围内的宽表行，可重复执行
+     */
+    int backfillCounters(@Param("afterId") Long afterId,
+                         @Param("toId") Long toId);
+
+    /**
+     * 对比 (afterId, toId] 范围内 content_metrics 与 content_counters 不一致的内容
+     */
+    List<ContentCounterDiff> findCounterMismatches(@Param("afterId") Long afterId,
+                                                   @Param("toId") Long toId);
+}
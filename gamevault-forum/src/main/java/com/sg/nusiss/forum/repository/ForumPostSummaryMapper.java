@@ -0,0 +1,48 @@
+package com.sg.nusiss.forum.repository;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 内容摘要 Mapper（post_summary 表）
+ * 每条内容一行，浏览数/点赞数/回复数以普通列保存，供列表查询直接读取
+ */
+@Mapper
+public interface ForumPostSummaryMapper {
+
+    /**
+     * 根据 contents 表中的内容初始化摘要行（计数为 0）
+     */
+    int insertFromContent(@Param("contentId") Long contentId);
+
+    /**
+     * 更新摘要行状态（与 contents.status 保持一致）
+     */
+    int updateStatus(@Param("contentId") Long contentId, @Param("status") String status);
+
+    /**
+     * 批量增加浏览数（单条语句）
+     * @param deltas Map<contentId, 增量>
+     */
+    int batchIncrementViewCount(@Param("deltas") Map<Long, Long> deltas);
+
+    /**
+     * 增加回复数（delta 可为负数）
+     */
+    int incrementReplyCount(@Param("contentId") Long contentId, @Param("delta") int delta);
+
+    /**
+     * 批量增加回复数（单条语句，结果不小于 0）
+     * @param deltas Map<contentId, 增量>
+     */
+    int batchIncrementReplyCount(@Param("deltas") Map<Long, Long> deltas);
+
+    /**
+     * 按关系表重新计算点赞数（可重复执行）
+     */
+    int recountLikeCounts(@Param("contentIds") List<Long> contentIds,
+                          @Param("relationTypeId") Integer relationTypeId);
+}
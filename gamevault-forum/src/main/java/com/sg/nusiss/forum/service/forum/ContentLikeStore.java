@@ -0,0 +1,627 @@
+package com.sg.nusiss.forum.service.forum;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sg.nusiss.forum.constant.ForumRelationType;
+import com.sg.nusiss.forum.entity.UserContentRelation;
+import com.sg.nusiss.forum.repository.ForumContentLikeMapper;
+import com.sg.nusiss.forum.repository.ForumContentMapper;
+import com.sg.nusiss.forum.repository.ForumMetricMapper;
+import com.sg.nusiss.forum.repository.ForumPostSummaryMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 点赞状态存储
+ *
+ * 点赞/取消点赞只修改内存状态并记录待写操作，不访问数据库：
+ * - 每个用户的已点赞内容位图（{@link LikedContentBitmap}）：首次访问时从 user_content_relations 加载，
+ *   按估算的内存占用限制总容量（forum.like.user-bitmap-max-bytes）；从加载起最多保留
+ *   forum.like.user-ttl-seconds，本地修改不延长有效期，多实例下其他实例写入的点赞最迟在该时间后可见
+ * - 每个内容的点赞数：已提交计数（content_metrics）+ 未持久化增量
+ * - 待写操作按 (用户, 内容) 合并，只保留最终状态
+ *
+ * 定时任务调用 {@link #flush()} 将待写操作批量写入数据库（INSERT ... ON CONFLICT DO NOTHING /
+ * DELETE，可重复执行），并在同一事务内按关系表重新计算受影响内容的点赞数。
+ *
+ * 每个操作同时追加到本地发件箱（{@link LikeOutbox}），进程崩溃后启动时重放未提交的操作。
+ * 未持久化的操作数超过 forum.like.outbox.max-lag（或发件箱段写满）时，点赞请求会先同步
+ * 刷新一次；数据库仍不可用导致积压无法消除时拒绝请求，避免内存和日志无限增长。
+ * 多实例部署时各实例的内存状态可能短暂不一致，由 {@link #reconcile()} 定期重算纠正。
+ * 点赞前校验内容存在且未删除（结果短暂缓存），不向已删除的内容缓冲点赞；
+ * 校验后、刷新前内容被删除时，刷新丢弃这些点赞并同步修正用户位图。
+ */
+@Slf4j
+@Component
+public class ContentLikeStore {
+
+    private static final int LIKE_TYPE = ForumRelationType.LIKE.intValue();
+    private static final String LIKE_METRIC = "like_count";
+    // 每条 SQL 的最大行数
+    private static final int BATCH_SIZE = 500;
+    private static final int LOCK_STRIPES = 64;
+
+    private final ForumContentLikeMapper contentLikeMapper;
+    private final ForumContentMapper contentMapper;
+    private final ForumMetricMapper metricMapper;
+    private final ForumPostSummaryMapper summaryMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final LikeOutbox outbox;
+    private final int maxLag;
+
+    // 用户ID -> 已点赞的内容ID（不可变位图，修改时整体替换以重新计算内存占用）
+    private final Cache<Long, LikedContentBitmap> userLikes;
+    // 内容ID -> 数据库中已提交的点赞数
+    private final Cache<Long, Integer> committedCounts;
+    // 已确认存在且未删除的内容ID（只缓存存在的结果）
+    private final Cache<Long, Boolean> activeContents;
+
+    // 点赞/取消点赞持读锁（可并发），切换缓冲区和提交后清理持写锁
+    private final ReentrantReadWriteLock bufferLock = new ReentrantReadWriteLock();
+    // 按用户分段的锁，保证同一用户的检查与修改是原子的
+    private final Object[] userLocks = new Object[LOCK_STRIPES];
+    // 防止定时刷新与关闭刷新并发执行
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // 待写操作：(用户, 内容) -> true 点赞 / false 取消
+    private volatile Map<LikeKey, Boolean> pending = new ConcurrentHashMap<>();
+    private volatile Map<Long, Integer> pendingDeltas = new ConcurrentHashMap<>();
+    // 正在写入数据库的操作，提交完成前仍计入读取结果
+    private volatile Map<LikeKey, Boolean> inFlight = Map.of();
+    private volatile Map<Long, Integer> inFlightDeltas = Map.of();
+
+    // 自上次对账以来写入过的内容
+    private final Set<Long> dirtyContents = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong flushedOperations = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong backpressureEvents = new AtomicLong();
+
+    public ContentLikeStore(ForumContentLikeMapper contentLikeMapper,
+                            ForumContentMapper contentMapper,
+                            ForumMetricMapper metricMapper,
+                            ForumPostSummaryMapper summaryMapper,
+                            TransactionTemplate transactionTemplate,
+                            LikeOutbox outbox,
+                            @Value("${forum.like.outbox.max-lag:100000}") int maxLag,
+                            @Value("${forum.like.user-bitmap-max-bytes:67108864}") long maxBitmapBytes,
+                            @Value("${forum.like.user-ttl-seconds:60}") long userTtlSeconds,
+                            @Value("${forum.like.max-counts:100000}") long maxCounts,
+                            @Value("${forum.like.count-ttl-seconds:300}") long countTtlSeconds,
+                            MeterRegistry meterRegistry) {
+        this.contentLikeMapper = contentLikeMapper;
+        this.contentMapper = contentMapper;
+        this.metricMapper = metricMapper;
+        this.summaryMapper = summaryMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.outbox = outbox;
+        this.maxLag = maxLag;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            userLocks[i] = new Object();
+        }
+
+        this.userLikes = Caffeine.newBuilder()
+                .maximumWeight(maxBitmapBytes)
+                .weigher((Long userId, LikedContentBitmap likes) -> likes.sizeInBytes())
+                .expireAfter(expireAfterLoad(Duration.ofSeconds(userTtlSeconds)))
+                .recordStats()
+                .build();
+        this.committedCounts = Caffeine.newBuilder()
+                .maximumSize(maxCounts)
+                .expireAfterWrite(Duration.ofSeconds(countTtlSeconds))
+                .recordStats()
+                .build();
+        this.activeContents = Caffeine.newBuilder()
+                .maximumSize(maxCounts)
+                .expireAfterWrite(Duration.ofSeconds(countTtlSeconds))
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, userLikes, "forum.like.users");
+        CaffeineCacheMetrics.monitor(meterRegistry, committedCounts, "forum.like.counts");
+        Gauge.builder("forum.like.users.bytes", this, ContentLikeStore::getUserLikesBytes)
+                .description("已点赞位图估算占用的内存（字节）")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("forum.like.pending", this, ContentLikeStore::getPendingCount)
+                .description("未持久化的点赞操作数")
+                .register(meterRegistry);
+        FunctionCounter.builder("forum.like.flushed", flushedOperations, AtomicLong::get)
+                .description("已持久化的点赞操作数")
+                .register(meterRegistry);
+        FunctionCounter.builder("forum.like.flush.failures", failedFlushes, AtomicLong::get)
+                .description("点赞持久化失败次数")
+                .register(meterRegistry);
+        FunctionCounter.builder("forum.like.backpressure", backpressureEvents, AtomicLong::get)
+                .description("因积压触发同步刷新的次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 重放发件箱中崩溃前未提交的操作（同一 (用户, 内容) 以最后一次为准），由下一次刷新写入数据库
+     * 点赞数在写入并重算前不包含这些操作
+     */
+    @PostConstruct
+    public void recover() {
+        List<LikeOutbox.Operation> operations = outbox.recover();
+        for (LikeOutbox.Operation operation : operations) {
+            pending.put(new LikeKey(operation.userId(), operation.contentId()), operation.liked());
+        }
+        if (!operations.isEmpty()) {
+            log.info("点赞发件箱恢复完成 - 记录数: {}, 待写操作数: {}", operations.size(), pending.size());
+        }
+    }
+
+    // ==================== 写操作 ====================
+
+    /**
+     * 设置点赞状态
+     * @return true 如果状态发生了变化
+     */
+    public boolean setLiked(Long contentId, Long userId, boolean liked) {
+        // 取消点赞不需要校验，已删除内容上的残留点赞允许被移除
+        if (liked) {
+            requireActive(contentId);
+        }
+        return update(contentId, userId, liked) != null;
+    }
+
+    /**
+     * 切换点赞状态
+     * @return 切换后的状态
+     */
+    public boolean toggle(Long contentId, Long userId) {
+        requireActive(contentId);
+        return update(contentId, userId, null);
+    }
+
+    /**
+     * 原子地检查并修改用户的点赞状态，记录待写操作
+     * @param liked 目标状态，null 表示取反
+     * @return 修改后的状态，未发生变化时返回 null
+     */
+    private Boolean update(Long contentId, Long userId, Boolean liked) {
+        Object lock = lockFor(userId);
+        boolean outboxFull = false;
+        while (true) {
+            if (outboxFull || getPendingCount() >= maxLag) {
+                applyBackpressure();
+                outboxFull = false;
+            }
+            LikedContentBitmap likes = userLikes.get(userId, this::loadUserLikes);
+            bufferLock.readLock().lock();
+            try {
+                synchronized (lock) {
+                    // 位图在读取后已被替换、淘汰或重新加载，改用最新的
+                    if (userLikes.asMap().get(userId) != likes) {
+                        continue;
+                    }
+                    boolean current = likes.contains(contentId);
+                    boolean target = liked != null ? liked : !current;
+                    if (target == current) {
+                        return null;
+                    }
+                    // 先写发件箱，写满时释放锁后刷新再重试
+                    if (!outbox.append(userId, contentId, target)) {
+                        outboxFull = true;
+                        continue;
+                    }
+                    pending.put(new LikeKey(userId, contentId), target);
+                    pendingDeltas.merge(contentId, target ? 1 : -1, ContentLikeStore::sumOrRemove);
+                    // 替换失败说明位图刚被淘汰，下次加载时会叠加上面的待写操作
+                    userLikes.asMap().replace(userId, likes, likes.with(contentId, target));
+                    return target;
+                }
+            } finally {
+                bufferLock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * 校验内容存在且未删除，否则点赞会在刷新时被 batchInsertIgnore 的 JOIN 静默丢弃
+     */
+    private void requireActive(Long contentId) {
+        if (activeContents.get(contentId, id -> contentMapper.existsActive(id) ? Boolean.TRUE : null) == null) {
+            throw new IllegalArgumentException("内容不存在或已删除");
+        }
+    }
+
+    /**
+     * 内容被删除后调用，之后的点赞请求重新校验
+     */
+    public void evictContent(Long contentId) {
+        activeContents.invalidate(contentId);
+    }
+
+    /**
+     * 积压过多时在调用线程中同步刷新一次，仍未消除则拒绝本次操作
+     * （调用方不能持有缓冲区锁）
+     */
+    private void applyBackpressure() {
+        backpressureEvents.incrementAndGet();
+        log.warn("点赞操作积压 - 未持久化操作数: {}, 同步刷新", getPendingCount());
+        flush();
+        if (getPendingCount() >= maxLag) {
+            throw new IllegalStateException("点赞操作过多，请稍后再试");
+        }
+    }
+
+    // ==================== 读操作 ====================
+
+    public boolean isLiked(Long contentId, Long userId) {
+        return userLikes.get(userId, this::loadUserLikes).contains(contentId);
+    }
+
+    /**
+     * 批量检查点赞状态（位图查找）
+     */
+    public Map<Long, Boolean> batchIsLiked(Long userId, Collection<Long> contentIds) {
+        LikedContentBitmap likes = userLikes.get(userId, this::loadUserLikes);
+        Map<Long, Boolean> result = new HashMap<>();
+        for (Long contentId : contentIds) {
+            result.put(contentId, likes.contains(contentId));
+        }
+        return result;
+    }
+
+    /**
+     * 用户已点赞的内容ID（含未持久化的操作，按内容ID升序）
+     */
+    public List<Long> getLikedContentIds(Long userId) {
+        return userLikes.get(userId, this::loadUserLikes).toList();
+    }
+
+    public int getLikeCount(Long contentId) {
+        bufferLock.readLock().lock();
+        try {
+            Integer committed = committedCounts.get(contentId, this::loadCount);
+            return Math.max(0, committed + getPendingDelta(contentId));
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 批量获取点赞数，缓存未命中的内容用一次查询加载
+     */
+    public Map<Long, Integer> getLikeCounts(Collection<Long> contentIds) {
+        bufferLock.readLock().lock();
+        try {
+            Map<Long, Integer> committed = committedCounts.getAll(contentIds, this::loadCounts);
+            Map<Long, Integer> result = new HashMap<>();
+            for (Long contentId : contentIds) {
+                int base = committed.getOrDefault(contentId, 0);
+                result.put(contentId, Math.max(0, base + getPendingDelta(contentId)));
+            }
+            return result;
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取内容未持久化的点赞数增量（读取数据库中的 like_count 时合并）
+     */
+    public int getPendingDelta(Long contentId) {
+        if (contentId == null) {
+            return 0;
+        }
+        return pendingDeltas.getOrDefault(contentId, 0) + inFlightDeltas.getOrDefault(contentId, 0);
+    }
+
+    public int getPendingCount() {
+        return pending.size() + inFlight.size();
+    }
+
+    /**
+     * 缓存中全部已点赞位图的估算内存占用（字节）
+     */
+    public long getUserLikesBytes() {
+        return userLikes.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+    // ==================== 持久化 ====================
+
+    /**
+     * 将待写操作批量写入数据库
+     * 写入失败时操作回填到缓冲区（已有更新的操作优先），等待下次刷新
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            LikeOutbox.Mark outboxMark;
+            bufferLock.writeLock().lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                // 记录发件箱位置，本批操作的记录都在该位置之前
+                outboxMark = outbox.roll();
+                inFlight = pending;
+                inFlightDeltas = pendingDeltas;
+                pending = new ConcurrentHashMap<>();
+                pendingDeltas = new ConcurrentHashMap<>();
+            } finally {
+                bufferLock.writeLock().unlock();
+            }
+
+            Map<LikeKey, Boolean> operations = inFlight;
+            Set<Long> contentIds = new HashSet<>();
+            Set<Long> likedContentIds = new HashSet<>();
+            List<UserContentRelation> inserts = new ArrayList<>();
+            List<UserContentRelation> deletes = new ArrayList<>();
+            LocalDateTime now = LocalDateTime.now();
+            operations.forEach((key, liked) -> {
+                UserContentRelation relation = new UserContentRelation(key.userId(), key.contentId(), LIKE_TYPE);
+                relation.setCreatedDate(now);
+                (liked ? inserts : deletes).add(relation);
+                contentIds.add(key.contentId());
+                if (liked) {
+                    likedContentIds.add(key.contentId());
+                }
+            });
+
+            try {
+                Set<Long> inactive = transactionTemplate.execute(status -> {
+                    for (List<UserContentRelation> chunk : partition(inserts)) {
+                        contentLikeMapper.batchInsertIgnore(chunk, LIKE_TYPE);
+                    }
+                    for (List<UserContentRelation> chunk : partition(deletes)) {
+                        contentLikeMapper.batchDelete(chunk, LIKE_TYPE);
+                    }
+                    recount(contentIds);
+                    return findInactive(likedContentIds);
+                });
+                completeFlush(contentIds, outboxMark);
+                dropRejectedLikes(inserts, inactive);
+                dirtyContents.addAll(contentIds);
+                flushedOperations.addAndGet(operations.size());
+                log.debug("点赞持久化完成 - 点赞: {}, 取消: {}", inserts.size(), deletes.size());
+            } catch (Exception e) {
+                failedFlushes.incrementAndGet();
+                restore(operations);
+                log.error("点赞持久化失败，操作已回填 - 操作数: {}, 错误: {}", operations.size(), e.getMessage());
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 按关系表重新计算点赞数并刷新本地计数缓存
+     */
+    public void syncCounts(Collection<Long> contentIds) {
+        if (contentIds == null || contentIds.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> recount(contentIds));
+        committedCounts.invalidateAll(contentIds);
+    }
+
+    /**
+     * 对账：重算上次对账以来写入过的内容
+     * 纠正多实例并发写入时事务内重算读到的旧值
+     * @return 重算的内容数
+     */
+    public int reconcile() {
+        if (dirtyContents.isEmpty()) {
+            return 0;
+        }
+        List<Long> contentIds = new ArrayList<>(dirtyContents);
+        dirtyContents.removeAll(contentIds);
+        try {
+            syncCounts(contentIds);
+        } catch (RuntimeException e) {
+            dirtyContents.addAll(contentIds);
+            throw e;
+        }
+        return contentIds.size();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("应用关闭 - 持久化未写入的点赞操作");
+        flush();
+        outbox.close();
+    }
+
+    private void recount(Collection<Long> contentIds) {
+        List<Long> ids = new ArrayList<>(contentIds);
+        for (List<Long> chunk : partition(ids)) {
+            metricMapper.recountRelationMetric(LIKE_METRIC, LIKE_TYPE, chunk);
+            summaryMapper.recountLikeCounts(chunk, LIKE_TYPE);
+        }
+    }
+
+    /**
+     * 提交成功：先让已提交计数失效，再移除进行中的增量，并清除发件箱中已提交的记录
+     * （持写锁，清除期间没有并发追加）
+     */
+    private void completeFlush(Set<Long> contentIds, LikeOutbox.Mark outboxMark) {
+        bufferLock.writeLock().lock();
+        try {
+            committedCounts.invalidateAll(contentIds);
+            outbox.release(outboxMark);
+            inFlight = Map.of();
+            inFlightDeltas = Map.of();
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 点赞前校验通过、刷新前内容被删除的点赞不会被 batchInsertIgnore 写入（JOIN 要求内容未删除），
+     * 在同一事务内找出这些内容，提交后从用户位图中移除对应的点赞
+     */
+    private Set<Long> findInactive(Set<Long> likedContentIds) {
+        Set<Long> inactive = new HashSet<>(likedContentIds);
+        for (List<Long> chunk : partition(new ArrayList<>(likedContentIds))) {
+            inactive.removeAll(contentMapper.findActiveContentIds(chunk));
+        }
+        return inactive;
+    }
+
+    /**
+     * 从用户位图中移除未写入的点赞（同一 (用户, 内容) 已有更新的操作时保留），之后的点赞重新校验内容
+     */
+    private void dropRejectedLikes(List<UserContentRelation> inserts, Set<Long> inactive) {
+        if (inactive.isEmpty()) {
+            return;
+        }
+        activeContents.invalidateAll(inactive);
+        int dropped = 0;
+        bufferLock.readLock().lock();
+        try {
+            for (UserContentRelation relation : inserts) {
+                Long userId = relation.getUserId();
+                Long contentId = relation.getContentId();
+                if (!inactive.contains(contentId)) {
+                    continue;
+                }
+                synchronized (lockFor(userId)) {
+                    if (pending.containsKey(new LikeKey(userId, contentId))) {
+                        continue;
+                    }
+                    userLikes.asMap().computeIfPresent(userId, (id, likes) -> likes.with(contentId, false));
+                    dropped++;
+                }
+            }
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        log.info("内容已删除，丢弃未写入的点赞 - 内容数: {}, 点赞数: {}", inactive.size(), dropped);
+    }
+
+    /**
+     * 提交失败：把进行中的操作合并回缓冲区，同一 (用户, 内容) 已有更新操作时保留更新的
+     */
+    private void restore(Map<LikeKey, Boolean> operations) {
+        bufferLock.writeLock().lock();
+        try {
+            operations.forEach(pending::putIfAbsent);
+            inFlightDeltas.forEach((contentId, delta) ->
+                    pendingDeltas.merge(contentId, delta, ContentLikeStore::sumOrRemove));
+            inFlight = Map.of();
+            inFlightDeltas = Map.of();
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+    }
+
+    // ==================== 加载 ====================
+
+    /**
+     * 从数据库加载用户的已点赞位图，并叠加尚未持久化的操作
+     */
+    private LikedContentBitmap loadUserLikes(Long userId) {
+        bufferLock.readLock().lock();
+        try {
+            LikedContentBitmap likes = LikedContentBitmap.of(
+                    contentLikeMapper.findContentIdsByUserAndType(userId, LIKE_TYPE));
+            synchronized (lockFor(userId)) {
+                likes = applyOperations(likes, userId, inFlight);
+                likes = applyOperations(likes, userId, pending);
+            }
+            return likes;
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+    }
+
+    private static LikedContentBitmap applyOperations(LikedContentBitmap likes, Long userId,
+                                                      Map<LikeKey, Boolean> operations) {
+        for (Map.Entry<LikeKey, Boolean> operation : operations.entrySet()) {
+            LikeKey key = operation.getKey();
+            if (key.userId() == userId) {
+                likes = likes.with(key.contentId(), operation.getValue());
+            }
+        }
+        return likes;
+    }
+
+    private Integer loadCount(Long contentId) {
+        Integer value = metricMapper.getMetricValue(contentId, LIKE_METRIC);
+        return value != null ? value : 0;
+    }
+
+    private Map<Long, Integer> loadCounts(Set<? extends Long> contentIds) {
+        Map<Long, Integer> loaded = new HashMap<>();
+        Map<Long, Integer> metrics = metricMapper.getBatchMetrics(new ArrayList<>(contentIds), LIKE_METRIC);
+        for (Long contentId : contentIds) {
+            Integer value = metrics != null ? metrics.get(contentId) : null;
+            loaded.put(contentId, value != null ? value : 0);
+        }
+        return loaded;
+    }
+
+    /**
+     * 位图的有效期从加载时开始计算，点赞时替换位图不会重置，
+     * 保证活跃用户的位图也会定期从数据库重新加载
+     */
+    private static Expiry<Long, LikedContentBitmap> expireAfterLoad(Duration ttl) {
+        long ttlNanos = ttl.toNanos();
+        return new Expiry<>() {
+            @Override
+            public long expireAfterCreate(Long userId, LikedContentBitmap likes, long currentTime) {
+                return ttlNanos;
+            }
+
+            @Override
+            public long expireAfterUpdate(Long userId, LikedContentBitmap likes, long currentTime,
+                                          long currentDuration) {
+                return currentDuration;
+            }
+
+            @Override
+            public long expireAfterRead(Long userId, LikedContentBitmap likes, long currentTime,
+                                        long currentDuration) {
+                return currentDuration;
+            }
+        };
+    }
+
+    private Object lockFor(Long userId) {
+        return userLocks[Long.hashCode(userId) & (LOCK_STRIPES - 1)];
+    }
+
+    private static Integer sumOrRemove(Integer a, Integer b) {
+        int sum = a + b;
+        return sum == 0 ? null : sum;
+    }
+
+    private static <T> List<List<T>> partition(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += BATCH_SIZE) {
+            chunks.add(items.subList(i, Math.min(items.size(), i + BATCH_SIZE)));
+        }
+        return chunks;
+    }
+
+    private record LikeKey(long userId, long contentId) {
+    }
+}
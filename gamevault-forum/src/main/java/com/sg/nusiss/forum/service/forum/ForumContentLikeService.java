@@ -3,19 +3,18 @@ package com.sg.nusiss.forum.service.forum;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import com.sg.nusiss.forum.constant.ForumRelationType;
 import com.sg.nusiss.forum.entity.UserContentRelation;
 import com.sg.nusiss.forum.repository.ForumContentLikeMapper;
 import com.sg.nusiss.forum.repository.ForumMetricMapper;
 
-import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 内容点赞服务（基于 user_content_relations 表）
+ * 点赞状态和点赞数由 ContentLikeStore 在内存中维护，关系记录异步批量持久化
  *
  * 位置: gamevault-forum/src/main/java/sg/edu/nus/gamevaultforum/service/forum/ForumContentLikeService.java
  */
@@ -26,58 +25,48 @@ public class ForumContentLikeService {
 
     private final ForumContentLikeMapper contentLikeMapper;
     private final ForumMetricMapper metricMapper;
+    private final ContentLikeStore likeStore;
+    private final HotPostRanker hotPostRanker;
 
     /**
      * 点赞内容
+     * 只修改内存状态，关系记录由 ContentLikeStore 异步批量写入
      */
-    @Transactional
     public boolean likeContent(Long contentId, Long userId) {
         if (contentId == null || userId == null) {
             throw new IllegalArgumentException("内容ID和用户ID不能为空");
         }
-
-        // 检查是否已点赞
-        if (contentLikeMapper.existsByUserAndContentAndType(userId, contentId, ForumRelationType.LIKE.intValue())) {
-            return false;
+        boolean changed = likeStore.setLiked(contentId, userId, true);
+        if (changed) {
+            hotPostRanker.recordLike(contentId, 1);
         }
-
-        // 创建点赞关系
-        UserContentRelation relation = new UserContentRelation(userId, contentId, ForumRelationType.LIKE.intValue());
-        relation.setCreatedDate(LocalDateTime.now());
-
-        int inserted = contentLikeMapper.insert(relation);
-        return inserted > 0;
+        return changed;
     }
 
     /**
      * 取消点赞
      */
-    @Transactional
     public boolean unlikeContent(Long contentId, Long userId) {
         if (contentId == null || userId == null) {
             throw new IllegalArgumentException("内容ID和用户ID不能为空");
         }
-
-        if (!contentLikeMapper.existsByUserAndContentAndType(userId, contentId, ForumRelationType.LIKE.intValue())) {
-            return false;
+        boolean changed = likeStore.setLiked(contentId, userId, false);
+        if (changed) {
+            hotPostRanker.recordLike(contentId, -1);
         }
-
-        int deleted = contentLikeMapper.deleteByUserAndContentAndType(userId, contentId, ForumRelationType.LIKE.intValue());
-        return deleted > 0;
+        return changed;
     }
 
     /**
      * 切换点赞状态
      */
-    @Transactional
     public boolean toggleLike(Long contentId, Long userId) {
-        if (contentLikeMapper.existsByUserAndContentAndType(userId, contentId, ForumRelationType.LIKE.intValue())) {
-            unlikeContent(contentId, userId);
-            return false;
-        } else {
-            likeContent(contentId, userId);
-            return true;
+        if (contentId == null || userId == null) {
+            throw new IllegalArgumentException("内容ID和用户ID不能为空");
         }
+        boolean liked = likeStore.toggle(contentId, userId);
+        hotPostRanker.recordLike(contentId, liked ? 1 : -1);
+        return liked;
     }
 
     /**
@@ -87,17 +76,31 @@ public class ForumContentLikeService {
         if (contentId == null || userId == null) {
             return false;
         }
-        return contentLikeMapper.existsByUserAndContentAndType(userId, contentId, ForumRelationType.LIKE.intValue());
+        return likeStore.isLiked(contentId, userId);
     }
 
     /**
-     * 获取内容的点赞数
+     * 获取内容的点赞数（含未持久化的点赞）
      */
     public int getLikeCount(Long contentId) {
         if (contentId == null) {
             return 0;
         }
-        return contentLikeMapper.countByContentAndType(contentId, ForumRelationType.LIKE.intValue());
+        return likeStore.getLikeCount(contentId);
+    }
+
+    /**
+     * 内容删除提交后调用，之后对该内容的点赞会被拒绝
+     */
+    public void onContentDeleted(Long contentId) {
+        likeStore.evictContent(contentId);
+    }
+
+    /**
+     * 获取内容未持久化的点赞数增量
+     */
+    public int getPendingLikeDelta(Long contentId) {
+        return likeStore.getPendingDelta(contentId);
     }
 
     /**
@@ -117,7 +120,7 @@ public class ForumContentLikeService {
         if (userId == null) {
             throw new IllegalArgumentException("用户ID不能为空");
         }
-        return contentLikeMapper.findContentIdsByUserAndType(userId, ForumRelationType.LIKE.intValue());
+        return likeStore.getLikedContentIds(userId);
     }
 
     /**
@@ -128,15 +131,7 @@ public class ForumContentLikeService {
             return new HashMap<>();
         }
 
-        List<Long> likedContentIds = contentLikeMapper
-                .findLikedContentIdsByUserAndType(userId, contentIds, ForumRelationType.LIKE.intValue());
-
-        Map<Long, Boolean> result = new HashMap<>();
-        for (Long contentId : contentIds) {
-            result.put(contentId, likedContentIds.contains(contentId));
-        }
-
-        return result;
+        return likeStore.batchIsLiked(userId, contentIds);
     }
 
     /**
@@ -146,7 +141,7 @@ public class ForumContentLikeService {
         if (contentIds == null || contentIds.isEmpty()) {
             return new HashMap<>();
         }
-        return metricMapper.getBatchMetrics(contentIds, "like_count");
+        return likeStore.getLikeCounts(contentIds);
     }
 
     /**
@@ -172,28 +167,28 @@ public class ForumContentLikeService {
     /**
      * 同步点赞数
      */
-    @Transactional
     public void syncLikeCount(Long contentId) {
         if (contentId == null) {
             throw new IllegalArgumentException("内容ID不能为空");
         }
-
-        int actualCount = contentLikeMapper.countByContentAndType(contentId, ForumRelationType.LIKE.intValue());
-        metricMapper.setMetricValue(contentId, "like_count", actualCount);
+        likeStore.syncCounts(List.of(contentId));
     }
 
     /**
-     * 批量同步点赞数
+     * 批量同步点赞数（按关系表重算，批量 SQL）
      */
-    @Transactional
     public void batchSyncLikeCounts(List<Long> contentIds) {
         if (contentIds == null || contentIds.isEmpty()) {
             return;
         }
+        likeStore.syncCounts(contentIds);
+    }
 
-        for (Long contentId : contentIds) {
-            syncLikeCount(contentId);
-        }
+    /**
+     * 对账：重算最近写入过的内容的点赞数（由定时任务调用）
+     */
+    public int reconcileLikeCounts() {
+        return likeStore.reconcile();
     }
 
     /**
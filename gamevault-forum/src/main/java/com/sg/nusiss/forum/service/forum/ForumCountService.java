@@ -0,0 +1,160 @@
+package com.sg.nusiss.forum.service.forum;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sg.nusiss.common.transaction.TransactionUtils;
+import com.sg.nusiss.forum.repository.ForumContentMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分页总数服务
+ *
+ * 活跃帖子数、每个帖子的回复数/根回复数、每个作者的帖子数首次读取时 COUNT 一次，
+ * 之后由创建/删除操作在事务提交后增量维护；缓存带 TTL，过期后重新 COUNT，
+ * 纠正多实例部署时其他实例写入造成的偏差。
+ * 搜索结果数为上限截断的估算值（forum.search.count-cap），按关键词短时间缓存，
+ * 帖子创建/修改/删除时整体失效。
+ */
+@Service
+public class ForumCountService {
+
+    private enum Kind { ACTIVE_POSTS, REPLIES, ROOT_REPLIES, AUTHOR_POSTS }
+
+    private record CountKey(Kind kind, long id) {
+    }
+
+    private final ForumContentMapper contentMapper;
+    private final int searchCountCap;
+
+    private final Cache<CountKey, AtomicInteger> counters;
+    private final Cache<String, Integer> searchCounts;
+
+    public ForumCountService(ForumContentMapper contentMapper,
+                             @Value("${forum.search.count-cap:1000}") int searchCountCap,
+                             @Value("${forum.count-cache.max-size:50000}") long maxSize,
+                             @Value("${forum.count-cache.ttl-seconds:300}") long ttlSeconds,
+                             @Value("${forum.count-cache.search-ttl-seconds:30}") long searchTtlSeconds,
+                             MeterRegistry meterRegistry) {
+        this.contentMapper = contentMapper;
+        this.searchCountCap = searchCountCap;
+
+        this.counters = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.searchCounts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(searchTtlSeconds))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, counters, "forum.counts");
+        CaffeineCacheMetrics.monitor(meterRegistry, searchCounts, "forum.search_counts");
+    }
+
+    // ==================== 查询 ====================
+
+    public int getActivePostCount() {
+        return get(new CountKey(Kind.ACTIVE_POSTS, 0));
+    }
+
+    public int getReplyCount(Long postId) {
+        return get(new CountKey(Kind.REPLIES, postId));
+    }
+
+    public int getRootReplyCount(Long postId) {
+        return get(new CountKey(Kind.ROOT_REPLIES, postId));
+    }
+
+    public int getAuthorPostCount(Long authorId) {
+        return get(new CountKey(Kind.AUTHOR_POSTS, authorId));
+    }
+
+    /**
+     * 搜索结果数（最多统计到 searchCountCap 条）
+     */
+    public int getSearchCount(String keyword) {
+        String normalized = keyword.trim().toLowerCase(Locale.ROOT);
+        return searchCounts.get(normalized, k -> contentMapper.countSearchPosts(keyword.trim(), searchCountCap));
+    }
+
+    public int getSearchCountCap() {
+        return searchCountCap;
+    }
+
+    // ==================== 增量维护（事务提交后生效） ====================
+
+    public void onPostCreated(Long authorId) {
+        TransactionUtils.afterCommit(() -> {
+            adjust(new CountKey(Kind.ACTIVE_POSTS, 0), 1);
+            adjust(new CountKey(Kind.AUTHOR_POSTS, authorId), 1);
+            searchCounts.invalidateAll();
+        });
+    }
+
+    public void onPostDeleted(Long authorId) {
+        TransactionUtils.afterCommit(() -> {
+            adjust(new CountKey(Kind.ACTIVE_POSTS, 0), -1);
+            adjust(new CountKey(Kind.AUTHOR_POSTS, authorId), -1);
+            searchCounts.invalidateAll();
+        });
+    }
+
+    public void onPostUpdated() {
+        TransactionUtils.afterCommit(searchCounts::invalidateAll);
+    }
+
+    public void onReplyCreated(Long postId, boolean rootReply) {
+        TransactionUtils.afterCommit(() -> {
+            adjust(new CountKey(Kind.REPLIES, postId), 1);
+            if (rootReply) {
+                adjust(new CountKey(Kind.ROOT_REPLIES, postId), 1);
+            }
+        });
+    }
+
+    /**
+     * 被删除回复的楼中楼会提升为根回复，根回复数无法增量计算，直接失效后重新 COUNT
+     */
+    public void onReplyDeleted(Long postId) {
+        TransactionUtils.afterCommit(() -> {
+            adjust(new CountKey(Kind.REPLIES, postId), -1);
+            counters.invalidate(new CountKey(Kind.ROOT_REPLIES, postId));
+        });
+    }
+
+    // ==================== 内部方法 ====================
+
+    private int get(CountKey key) {
+        return counters.get(key, this::load).get();
+    }
+
+    private AtomicInteger load(CountKey key) {
+        int count = switch (key.kind()) {
+            case ACTIVE_POSTS -> contentMapper.countActivePosts();
+            case REPLIES -> contentMapper.countChildren(key.id());
+            case ROOT_REPLIES -> contentMapper.countRootReplies(key.id());
+            case AUTHOR_POSTS -> contentMapper.countActiveByAuthorId(key.id());
+        };
+        return new AtomicInteger(count);
+    }
+
+    /**
+     * 只调整已缓存的计数；未缓存时下次读取会直接 COUNT
+     */
+    private void adjust(CountKey key, int delta) {
+        // 直接修改计数对象，不刷新写入时间，TTL 到期后仍会重新 COUNT
+        AtomicInteger counter = counters.getIfPresent(key);
+        if (counter != null) {
+            counter.updateAndGet(value -> Math.max(0, value + delta));
+        }
+    }
+}
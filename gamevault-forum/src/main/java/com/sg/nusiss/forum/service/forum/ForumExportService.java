@@ -0,0 +1,195 @@
+package com.sg.nusiss.forum.service.forum;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sg.nusiss.forum.entity.ForumContent;
+import com.sg.nusiss.forum.repository.ForumContentMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 用户论坛数据导出
+ *
+ * 通过 MyBatis Cursor（服务端游标，按 fetchSize 分批取行）逐行读取作者的全部帖子和回复，
+ * 直接写入响应输出流，内存占用与导出行数无关。游标在只读事务中遍历，
+ * 导出期间会占用一个数据库连接，因此同时进行的导出数受 forum.export.max-concurrent 限制。
+ */
+@Slf4j
+@Service
+public class ForumExportService {
+
+    private static final String[] CSV_HEADER = {
+            "content_id", "content_type", "parent_id", "reply_to", "title", "body",
+            "status", "created_date", "updated_date"
+    };
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final ForumContentMapper contentMapper;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Semaphore permits;
+
+    public ForumExportService(ForumContentMapper contentMapper,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${forum.export.max-concurrent:2}") int maxConcurrent) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("同时导出数必须为正数");
+        }
+        this.contentMapper = contentMapper;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * 导出格式
+     */
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            if (value == null || value.isBlank()) {
+                return NDJSON;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的导出格式: " + value);
+            }
+        }
+    }
+
+    /**
+     * 导出作者的全部内容到输出流（不关闭输出流）
+     * 在写出第一个字节之前检查并发数，超过时抛出 IllegalStateException
+     * @return 导出的行数
+     */
+    public long exportByAuthor(Long authorId, Format format, OutputStream out) {
+        if (authorId == null) {
+            throw new IllegalArgumentException("用户ID不能为空");
+        }
+        if (!permits.tryAcquire()) {
+            throw new IllegalStateException("导出任务过多，请稍后再试");
+        }
+        long started = System.currentTimeMillis();
+        try {
+            Long rows = readOnlyTransaction.execute(status -> {
+                try (Cursor<ForumContent> cursor = contentMapper.streamByAuthorId(authorId)) {
+                    Writer writer = new BufferedWriter(
+                            new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+                    long count = format == Format.CSV ? writeCsv(cursor, writer) : writeNdjson(cursor, writer);
+                    writer.flush();
+                    return count;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            long count = rows != null ? rows : 0;
+            log.info("导出用户内容完成 - 用户ID: {}, 格式: {}, 行数: {}, 耗时: {}ms",
+                    authorId, format, count, System.currentTimeMillis() - started);
+            return count;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private long writeNdjson(Cursor<ForumContent> cursor, Writer writer) throws IOException {
+        long count = 0;
+        // 生成器不关闭底层 Writer，每行一个 JSON 对象
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        for (ForumContent content : cursor) {
+            generator.writeObject(ExportRow.of(content));
+            generator.writeRaw('\n');
+            count++;
+        }
+        generator.flush();
+        return count;
+    }
+
+    private long writeCsv(Cursor<ForumContent> cursor, Writer writer) throws IOException {
+        writeCsvLine(writer, (Object[]) CSV_HEADER);
+        long count = 0;
+        for (ForumContent content : cursor) {
+            writeCsvLine(writer,
+                    content.getContentId(), content.getContentType(), content.getParentId(), content.getReplyTo(),
+                    content.getTitle(), content.getBody(), content.getStatus(),
+                    content.getCreatedDate(), content.getUpdatedDate());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 按 RFC 4180 写一行：含逗号、引号或换行的字段加引号，引号写两次
+     */
+    private static void writeCsvLine(Writer writer, Object... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object field = fields[i];
+            if (field == null) {
+                continue;
+            }
+            String value = field.toString();
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * 导出的字段（不含由正文生成的 body_plain 和统计数据）
+     */
+    record ExportRow(Long contentId, String contentType, Long parentId, Long replyTo,
+                     String title, String body, String status,
+                     LocalDateTime createdDate, LocalDateTime updatedDate) {
+
+        static ExportRow of(ForumContent content) {
+            return new ExportRow(content.getContentId(), content.getContentType(),
+                    content.getParentId(), content.getReplyTo(), content.getTitle(), content.getBody(),
+                    content.getStatus(), content.getCreatedDate(), content.getUpdatedDate());
+        }
+    }
+}
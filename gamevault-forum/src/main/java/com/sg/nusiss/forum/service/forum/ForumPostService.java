@@ -1,6 +1,7 @@
 package com.sg.nusiss.forum.service.forum;
 
 import com.sg.nusiss.common.dto.UserDTO;
+import com.sg.nusiss.common.transaction.TransactionUtils;
 import com.sg.nusiss.forum.service.user.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -9,10 +10,14 @@ import org.springframework.transaction.annotation.Transactional;
 import com.sg.nusiss.forum.entity.ForumContent;
 import com.sg.nusiss.forum.repository.ForumContentMapper;
 import com.sg.nusiss.forum.repository.ForumMetricMapper;
+import com.sg.nusiss.forum.repository.ForumPostSummaryMapper;
+import com.sg.nusiss.forum.util.HashIdUtil;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -28,7 +33,15 @@ public class ForumPostService {
 
     private final ForumContentMapper contentMapper;
     private final ForumMetricMapper metricMapper;
+    private final ForumPostSummaryMapper summaryMapper;
     private final ForumContentLikeService contentLikeService;
+    private final HashIdUtil hashIdUtil;
+    private final ViewCountBuffer viewCountBuffer;
+    private final HotPostRanker hotPostRanker;
+    private final ForumCountService countService;
+    private final PostDetailCache postDetailCache;
+    private final ReplyCountCounter replyCountCounter;
+    private final ReplyThreadLoader replyThreadLoader;
 
     // ⭐ 修复: 添加 UserService 注入
     private final UserService userService;
@@ -36,6 +49,7 @@ public class ForumPostService {
     /**
      * 创建新帖子
      */
+    @Transactional
     public ForumContent createPost(String title, String body, Long authorId) {
         log.info("创建新帖子 - 作者ID: {}, 标题: {}", authorId, title);
 
@@ -61,8 +75,15 @@ public class ForumPostService {
             int result = contentMapper.insert(post);
             if (result > 0) {
                 log.info("帖子创建成功 - 帖子ID: {}, 作者ID: {}", post.getContentId(), authorId);
+                // 初始化摘要行（列表查询依赖该行）
+                summaryMapper.insertFromContent(post.getContentId());
                 // 初始化统计数据
                 initializePostMetrics(post.getContentId());
+                // 事务回滚时不能让未提交的帖子进入热度排行
+                Long postId = post.getContentId();
+                LocalDateTime createdDate = post.getCreatedDate();
+                TransactionUtils.afterCommit(() -> hotPostRanker.recordPost(postId, createdDate));
+                countService.onPostCreated(authorId);
 
                 // ⭐ 修复: 填充作者信息
                 enrichSinglePostWithUserInfo(post);
@@ -80,20 +101,29 @@ public class ForumPostService {
 
     /**
      * 根据ID获取帖子详情
-     * ⭐ 修复: 添加用户信息获取
+     * 帖子内容和作者信息来自 PostDetailCache，点赞数和未刷新的浏览增量每次单独合并
      */
     public ForumContent getPostById(Long id, Long currentUserId) {
-        ForumContent post = contentMapper.findById(id);
+        // 缓存中的浏览量基数和未刷新的浏览增量一起读取，不会和浏览量刷新交错
+        ForumContent post = viewCountBuffer.readConsistently(() -> {
+            ForumContent cached = postDetailCache.get(id, this::loadPostDetail);
+            if (cached != null) {
+                long pendingViews = viewCountBuffer.getPendingDelta(id);
+                if (pendingViews > 0) {
+                    cached.setViewCount((int) (cached.getViewCount() + pendingViews));
+                }
+            }
+            return cached;
+        });
 
         if (post == null) {
             throw new RuntimeException("帖子不存在");
         }
 
-        log.info("从数据库查到的点赞数: {}", post.getLikeCount());
-
-        // ⭐ 修复: 获取作者信息
-        enrichSinglePostWithUserInfo(post);
-
+        // 点赞数以点赞存储为准（已包含未刷新的增量），缓存中的值可能已过时
+        post.setLikeCount(contentLikeService.getLikeCount(id));
+        // 回复数取增量维护的计数（post_summary 中的值在分片合并前会滞后）
+        post.setReplyCount(countService.getReplyCount(id));
         // 查询点赞状态
         if (currentUserId != null) {
             boolean isLiked = contentLikeService.isLiked(id, currentUserId);
@@ -108,7 +138,7 @@ public class ForumPostService {
      * ⭐ 修复: 添加用户信息获取
      */
     public List<ForumContent> getPostList(int page, int size, Long currentUserId) {
-        List<ForumContent> posts = contentMapper.findActivePosts(page * size, size);
+        List<ForumContent> posts = queryWithPendingCounts(() -> contentMapper.findActivePosts(page * size, size));
 
         if (posts.isEmpty()) {
             return posts;
@@ -125,15 +155,85 @@ public class ForumPostService {
         return posts;
     }
 
+    /**
+     * 获取帖子列表（游标分页，用于无限滚动）
+     * 每页查询成本与翻页深度无关
+     *
+     * @param cursor 上一页返回的游标，为空时返回第一页
+     */
+    public List<ForumContent> getPostListByCursor(String cursor, int size, Long currentUserId) {
+        HashIdUtil.CursorPosition position = resolveCursor(cursor);
+        List<ForumContent> posts = queryWithPendingCounts(() -> contentMapper.findActivePostsByCursor(
+                position != null ? position.createdDate : null,
+                position != null ? position.contentId : null,
+                normalizePageSize(size)));
+
+        if (posts.isEmpty()) {
+            return posts;
+        }
+
+        enrichPostsWithUserInfo(posts);
+
+        if (currentUserId != null) {
+            enrichPostsWithLikeStatus(posts, currentUserId);
+        }
+
+        return posts;
+    }
+
+    /**
+     * 获取热门帖子（按时间衰减热度排序）
+     * 帖子ID来自内存排行，只需一次按主键的批量查询
+     */
+    public List<ForumContent> getHotPosts(int size, Long currentUserId) {
+        List<Long> postIds = hotPostRanker.getTopPostIds(normalizePageSize(size));
+        if (postIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<ForumContent> posts = queryWithPendingCounts(() -> {
+            Map<Long, ForumContent> postMap = contentMapper.findActivePostsByIds(postIds).stream()
+                    .collect(Collectors.toMap(ForumContent::getContentId, post -> post));
+            List<ForumContent> ordered = new ArrayList<>(postMap.size());
+            for (Long postId : postIds) {
+                ForumContent post = postMap.get(postId);
+                if (post != null) {
+                    ordered.add(post);
+                }
+            }
+            return ordered;
+        });
+
+        enrichPostsWithUserInfo(posts);
+
+        if (currentUserId != null) {
+            enrichPostsWithLikeStatus(posts, currentUserId);
+        }
+
+        return posts;
+    }
+
+    /**
+     * 根据当前页内容生成下一页游标
+     * @return 下一页游标，没有更多数据时返回 null
+     */
+    public String getNextCursor(List<ForumContent> contents, int size) {
+        if (contents == null || contents.isEmpty() || contents.size() < normalizePageSize(size)) {
+            return null;
+        }
+        ForumContent last = contents.get(contents.size() - 1);
+        return hashIdUtil.encodeCursor(last.getCreatedDate(), last.getContentId());
+    }
+
     /**
      * 统计帖子总数
      */
     public int getPostCount() {
-        return contentMapper.countActivePosts();
+        return countService.getActivePostCount();
     }
 
     /**
-     * 搜索帖子
+     * 搜索帖子（全文检索，按相关度排序，结果带高亮摘要）
      * ⭐ 修复: 添加用户信息获取
      */
     public List<ForumContent> searchPosts(String keyword, int page, int size, Long currentUserId) {
@@ -145,7 +245,8 @@ public class ForumPostService {
         if (size <= 0 || size > 100) size = 20;
 
         int offset = page * size;
-        List<ForumContent> posts = contentMapper.searchPosts(keyword.trim(), offset, size);
+        int limit = size;
+        List<ForumContent> posts = queryWithPendingCounts(() -> contentMapper.searchPosts(keyword.trim(), offset, limit));
 
         if (posts.isEmpty()) {
             return posts;
@@ -164,35 +265,42 @@ public class ForumPostService {
 
     /**
      * 统计搜索结果数量
+     * 最多统计到 forum.search.count-cap 条，见 {@link #isSearchCountCapped(String, int)}
      */
     public int getSearchCount(String keyword) {
         if (keyword == null || keyword.trim().isEmpty()) {
             return getPostCount();
         }
-        return contentMapper.countSearchPosts(keyword.trim());
+        return countService.getSearchCount(keyword);
+    }
+
+    /**
+     * 搜索计数是否达到上限（此时实际结果数可能更多）
+     */
+    public boolean isSearchCountCapped(String keyword, int count) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return false;
+        }
+        return count >= countService.getSearchCountCap();
     }
 
     /**
      * 增加帖子浏览量
+     * 只写入内存缓冲，由 ViewCountBuffer 定时批量刷新到数据库；
+     * 调用方需已确认帖子存在（刷新时会忽略不存在的帖子ID）
      */
     public void incrementViewCount(Long postId) {
         if (postId == null) {
             throw new IllegalArgumentException("帖子ID不能为空");
         }
 
-        // 验证帖子存在
-        ForumContent post = contentMapper.findById(postId);
-        if (post == null || !post.isPost()) {
-            throw new RuntimeException("帖子不存在");
-        }
-
-        // 增加浏览量
-        metricMapper.incrementMetric(postId, "view_count", 1);
+        viewCountBuffer.increment(postId);
     }
 
     /**
      * 软删除帖子
      */
+    @Transactional
     public void deletePost(Long postId, Long userId) {
         if (postId == null) {
             throw new IllegalArgumentException("帖子ID不能为空");
@@ -211,6 +319,11 @@ public class ForumPostService {
 
         // 执行软删除
         contentMapper.softDelete(postId);
+        summaryMapper.updateStatus(postId, "deleted");
+        TransactionUtils.afterCommit(() -> hotPostRanker.remove(postId));
+        TransactionUtils.afterCommit(() -> contentLikeService.onContentDeleted(postId));
+        countService.onPostDeleted(post.getAuthorId());
+        postDetailCache.invalidate(postId);
     }
 
     /**
@@ -244,6 +357,8 @@ public class ForumPostService {
         // 保存更新
         int result = contentMapper.update(post);
         if (result > 0) {
+            countService.onPostUpdated();
+            postDetailCache.invalidate(postId);
             // ⭐ 修复: 填充作者信息
             enrichSinglePostWithUserInfo(post);
             return post;
@@ -252,6 +367,17 @@ public class ForumPostService {
         }
     }
 
+    /**
+     * 加载帖子详情（PostDetailCache 未命中时调用）
+     */
+    private ForumContent loadPostDetail(Long postId) {
+        ForumContent post = contentMapper.findById(postId);
+        if (post != null) {
+            enrichSinglePostWithUserInfo(post);
+        }
+        return post;
+    }
+
     /**
      * 初始化帖子的统计数据
      */
@@ -280,7 +406,8 @@ public class ForumPostService {
         int offset = page * size;
         log.info("查询用户活跃帖子 - 用户ID: {}, 页码: {}, 每页: {}", authorId, page, size);
 
-        List<ForumContent> posts = contentMapper.selectActiveByAuthorId(authorId, offset, size);
+        int limit = size;
+        List<ForumContent> posts = queryWithPendingCounts(() -> contentMapper.selectActiveByAuthorId(authorId, offset, limit));
 
         if (posts.isEmpty()) {
             return posts;
@@ -308,6 +435,34 @@ public class ForumPostService {
         return posts;
     }
 
+    /**
+     * 根据作者ID获取活跃帖子列表（游标分页）
+     */
+    public List<ForumContent> getPostsByAuthorIdByCursor(Long authorId, String cursor, int size, Long currentUserId) {
+        if (authorId == null) {
+            throw new IllegalArgumentException("作者ID不能为空");
+        }
+
+        HashIdUtil.CursorPosition position = resolveCursor(cursor);
+        List<ForumContent> posts = queryWithPendingCounts(() -> contentMapper.selectActiveByAuthorIdByCursor(
+                authorId,
+                position != null ? position.createdDate : null,
+                position != null ? position.contentId : null,
+                normalizePageSize(size)));
+
+        if (posts.isEmpty()) {
+            return posts;
+        }
+
+        enrichPostsWithUserInfo(posts);
+
+        if (currentUserId != null) {
+            enrichPostsWithLikeStatus(posts, currentUserId);
+        }
+
+        return posts;
+    }
+
     /**
      * 统计作者的活跃帖子数（未删除）
      */
@@ -316,13 +471,13 @@ public class ForumPostService {
             throw new IllegalArgumentException("作者ID不能为空");
         }
 
-        log.info("统计用户活跃帖子数 - 用户ID: {}", authorId);
-        return contentMapper.countActiveByAuthorId(authorId);
+        return countService.getAuthorPostCount(authorId);
     }
 
     /**
      * 创建回复（支持楼中楼）
      */
+    @Transactional
     public ForumContent createReply(Long parentId, String body, Long authorId, Long replyTo) {
         log.info("创建回复 - 父内容ID: {}, 作者ID: {}, replyTo: {}", parentId, authorId, replyTo);
 
@@ -379,11 +534,15 @@ public class ForumPostService {
                 log.info("回复创建成功 - 回复ID: {}, 父内容ID: {}, replyTo: {}",
                         reply.getContentId(), parentId, replyTo);
 
-                // 初始化回复的统计数据
+                // 初始化摘要行和回复的统计数据
+                summaryMapper.insertFromContent(reply.getContentId());
                 initializeReplyMetrics(reply.getContentId());
 
                 // 更新父内容(帖子)的回复数 +1
-                metricMapper.incrementMetric(parentId, "reply_count", 1);
+                replyCountCounter.increment(parentId, 1);
+                TransactionUtils.afterCommit(() -> hotPostRanker.recordReply(parentId, 1));
+                countService.onReplyCreated(parentId, replyTo == null);
+                postDetailCache.invalidate(parentId);
 
                 // ⭐ 修复: 填充作者信息
                 enrichSinglePostWithUserInfo(reply);
@@ -423,19 +582,34 @@ public class ForumPostService {
         // ⭐ 修复: 批量获取并填充用户信息
         enrichPostsWithUserInfo(replies);
 
-        // 为每个回复加载统计数据（如果 SQL 没有 JOIN）
-        for (ForumContent reply : replies) {
-            if (reply.getLikeCount() == null) {
-                Integer likeCount = metricMapper.getMetricValue(reply.getContentId(), "like_count");
-                reply.setLikeCount(likeCount != null ? likeCount : 0);
-            }
+        // 点赞数和当前用户的点赞状态
+        replyThreadLoader.hydrate(replies, currentUserId);
+
+        return replies;
+    }
+
+    /**
+     * 获取帖子的回复列表（游标分页）
+     */
+    public List<ForumContent> getRepliesByPostIdByCursor(Long postId, String cursor, int size, Long currentUserId) {
+        if (postId == null) {
+            throw new IllegalArgumentException("帖子ID不能为空");
         }
 
-        // 设置当前用户的点赞状态
-        if (currentUserId != null) {
-            enrichPostsWithLikeStatus(replies, currentUserId);
+        HashIdUtil.CursorPosition position = resolveCursor(cursor);
+        List<ForumContent> replies = contentMapper.findChildrenByCursor(
+                postId,
+                position != null ? position.createdDate : null,
+                position != null ? position.contentId : null,
+                normalizePageSize(size));
+
+        if (replies.isEmpty()) {
+            return replies;
         }
 
+        enrichPostsWithUserInfo(replies);
+        replyThreadLoader.hydrate(replies, currentUserId);
+
         return replies;
     }
 
@@ -446,7 +620,7 @@ public class ForumPostService {
         if (postId == null) {
             throw new IllegalArgumentException("帖子ID不能为空");
         }
-        return contentMapper.countChildren(postId);
+        return countService.getReplyCount(postId);
     }
 
     /**
@@ -470,9 +644,15 @@ public class ForumPostService {
 
         // 软删除回复
         contentMapper.softDelete(replyId);
+        summaryMapper.updateStatus(replyId, "deleted");
+        TransactionUtils.afterCommit(() -> contentLikeService.onContentDeleted(replyId));
 
         // 更新父内容的回复数 -1
-        metricMapper.incrementMetric(reply.getParentId(), "reply_count", -1);
+        Long parentId = reply.getParentId();
+        replyCountCounter.increment(parentId, -1);
+        TransactionUtils.afterCommit(() -> hotPostRanker.recordReply(parentId, -1));
+        countService.onReplyDeleted(parentId);
+        postDetailCache.invalidate(parentId);
     }
 
     /**
@@ -496,6 +676,55 @@ public class ForumPostService {
         }
     }
 
+    /**
+     * 解析分页游标，空游标表示第一页
+     */
+    private HashIdUtil.CursorPosition resolveCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        HashIdUtil.CursorPosition position = hashIdUtil.decodeCursor(cursor);
+        if (position == null) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+        return position;
+    }
+
+    /**
+     * 执行列表查询并合并未刷新的计数增量；查询和浏览增量在同一个一致视图中读取
+     * （见 {@link ViewCountBuffer#readConsistently}），刷新交错时重新查询
+     */
+    private List<ForumContent> queryWithPendingCounts(Supplier<List<ForumContent>> query) {
+        return viewCountBuffer.readConsistently(() -> {
+            List<ForumContent> posts = query.get();
+            applyPendingCounts(posts);
+            return posts;
+        });
+    }
+
+    /**
+     * 合并尚未刷新到数据库的浏览增量和点赞增量
+     */
+    private void applyPendingCounts(List<ForumContent> posts) {
+        for (ForumContent post : posts) {
+            long pendingViews = viewCountBuffer.getPendingDelta(post.getContentId());
+            if (pendingViews > 0) {
+                int base = post.getViewCount() != null ? post.getViewCount() : 0;
+                post.setViewCount((int) (base + pendingViews));
+            }
+            int pendingLikes = contentLikeService.getPendingLikeDelta(post.getContentId());
+            if (pendingLikes != 0) {
+                int base = post.getLikeCount() != null ? post.getLikeCount() : 0;
+                post.setLikeCount(Math.max(0, base + pendingLikes));
+            }
+        }
+    }
+
+
+    private int normalizePageSize(int size) {
+        return (size <= 0 || size > 100) ? 20 : size;
+    }
+
     // ========================================
     // ⭐ 新增辅助方法: 用户信息填充
     // ========================================
@@ -534,14 +763,14 @@ public class ForumPostService {
                 .distinct()
                 .collect(Collectors.toList());
 
-        log.info("批量查询用户信息 - 用户ID列表: {}", authorIds);
+        log.debug("批量查询用户信息 - 用户ID列表: {}", authorIds);
 
         // 2. 批量查询用户
         List<UserDTO> users = userService.getUsersByIds(authorIds);
         Map<Long, UserDTO> userMap = users.stream()
                 .collect(Collectors.toMap(UserDTO::getUserId, user -> user));
 
-        log.info("批量查询到 {} 个用户", users.size());
+        log.debug("批量查询到 {} 个用户", users.size());
 
         // 3. 填充用户信息到内容
         contents.forEach(content -> {
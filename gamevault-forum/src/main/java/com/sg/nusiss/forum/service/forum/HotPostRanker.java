@@ -0,0 +1,272 @@
+package com.sg.nusiss.forum.service.forum;
+
+import com.sg.nusiss.forum.entity.ForumContent;
+import com.sg.nusiss.forum.repository.ForumContentMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 热门帖子排行
+ *
+ * 热度 = (发帖权重 + 浏览权重 × 浏览数 + 点赞权重 × 点赞数 + 回复权重 × 回复数) × 2^(-帖龄 / 半衰期)
+ *
+ * 所有帖子按相同速率衰减，排序只取决于 活跃度 × 2^((发帖时间 - 基准时间) / 半衰期)，
+ * 因此浏览/点赞/回复只需在活跃度上加权重，不用随时间重算。候选帖子保存在按热度排序的
+ * 有序集合中（数量受 max-candidates 限制），取前 K 条为 O(K)。
+ * 定时重算从 post_summary 重新加载窗口内的帖子，纠正增量更新的误差并重置基准时间。
+ */
+@Slf4j
+@Component
+public class HotPostRanker {
+
+    private static final Comparator<Candidate> ORDER = Comparator
+            .comparingDouble((Candidate c) -> c.score).reversed()
+            .thenComparing(Comparator.comparingLong((Candidate c) -> c.postId).reversed());
+
+    private final ForumContentMapper contentMapper;
+    private final double halfLifeMillis;
+    private final long windowHours;
+    private final int maxCandidates;
+    private final double postWeight;
+    private final double viewWeight;
+    private final double likeWeight;
+    private final double replyWeight;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private Map<Long, Candidate> candidates = new HashMap<>();
+    private TreeSet<Candidate> ranking = new TreeSet<>(ORDER);
+    // 衰减基准时间（毫秒），重算时重置，避免衰减因子无限增长
+    private long epochMillis = System.currentTimeMillis();
+
+    public HotPostRanker(ForumContentMapper contentMapper,
+                         @Value("${forum.hot.half-life-hours:24}") double halfLifeHours,
+                         @Value("${forum.hot.window-hours:168}") long windowHours,
+                         @Value("${forum.hot.max-candidates:1000}") int maxCandidates,
+                         @Value("${forum.hot.weight.post:20}") double postWeight,
+                         @Value("${forum.hot.weight.view:1}") double viewWeight,
+                         @Value("${forum.hot.weight.like:5}") double likeWeight,
+                         @Value("${forum.hot.weight.reply:10}") double replyWeight,
+                         MeterRegistry meterRegistry) {
+        if (halfLifeHours <= 0 || windowHours <= 0 || maxCandidates <= 0) {
+            throw new IllegalArgumentException("热门排行配置必须为正数");
+        }
+        this.contentMapper = contentMapper;
+        this.halfLifeMillis = halfLifeHours * 3_600_000d;
+        this.windowHours = windowHours;
+        this.maxCandidates = maxCandidates;
+        this.postWeight = postWeight;
+        this.viewWeight = viewWeight;
+        this.likeWeight = likeWeight;
+        this.replyWeight = replyWeight;
+
+        Gauge.builder("forum.hot.candidates", this, HotPostRanker::getCandidateCount)
+                .description("热门排行候选帖子数")
+                .register(meterRegistry);
+    }
+
+    // ==================== 增量更新 ====================
+
+    /**
+     * 新帖子加入候选
+     */
+    public void recordPost(Long postId, LocalDateTime createdDate) {
+        if (postId == null || createdDate == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!candidates.containsKey(postId)) {
+                Candidate candidate = new Candidate(postId, decayFactor(createdDate), postWeight);
+                candidates.put(postId, candidate);
+                ranking.add(candidate);
+                trim();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 批量记录浏览增量（浏览量缓冲刷新时调用）
+     */
+    public void recordViews(Map<Long, Long> deltas) {
+        lock.lock();
+        try {
+            deltas.forEach((postId, delta) -> adjust(postId, viewWeight * delta));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录点赞数变化（非候选内容，如回复，会被忽略）
+     */
+    public void recordLike(Long contentId, int delta) {
+        lock.lock();
+        try {
+            adjust(contentId, likeWeight * delta);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录回复数变化
+     */
+    public void recordReply(Long postId, int delta) {
+        lock.lock();
+        try {
+            adjust(postId, replyWeight * delta);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 移除帖子（删除时调用）
+     */
+    public void remove(Long postId) {
+        lock.lock();
+        try {
+            Candidate candidate = candidates.remove(postId);
+            if (candidate != null) {
+                ranking.remove(candidate);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ==================== 查询 ====================
+
+    /**
+     * 获取热度最高的 K 个帖子ID（按热度降序）
+     */
+    public List<Long> getTopPostIds(int k) {
+        List<Long> postIds = new ArrayList<>(k);
+        lock.lock();
+        try {
+            Iterator<Candidate> iterator = ranking.iterator();
+            while (iterator.hasNext() && postIds.size() < k) {
+                postIds.add(iterator.next().postId);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return postIds;
+    }
+
+    public int getCandidateCount() {
+        lock.lock();
+        try {
+            return candidates.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ==================== 重算 ====================
+
+    /**
+     * 从 post_summary 重新加载窗口内热度最高的帖子并替换当前排行
+     * 加载期间发生的增量更新会被丢弃，由下一次重算补上
+     * @return 候选帖子数
+     */
+    public int recompute() {
+        long now = System.currentTimeMillis();
+        LocalDateTime since = LocalDateTime.now().minusHours(windowHours);
+        List<ForumContent> posts = contentMapper.findHotCandidates(since, halfLifeMillis / 1000d,
+                postWeight, viewWeight, likeWeight, replyWeight, maxCandidates);
+
+        Map<Long, Candidate> newCandidates = new HashMap<>();
+        TreeSet<Candidate> newRanking = new TreeSet<>(ORDER);
+        for (ForumContent post : posts) {
+            double activity = postWeight
+                    + viewWeight * valueOf(post.getViewCount())
+                    + likeWeight * valueOf(post.getLikeCount())
+                    + replyWeight * valueOf(post.getReplyCount());
+            Candidate candidate = new Candidate(post.getContentId(),
+                    decayFactor(post.getCreatedDate(), now), activity);
+            newCandidates.put(candidate.postId, candidate);
+            newRanking.add(candidate);
+        }
+
+        lock.lock();
+        try {
+            epochMillis = now;
+            candidates = newCandidates;
+            ranking = newRanking;
+        } finally {
+            lock.unlock();
+        }
+        log.debug("热门排行重算完成 - 候选帖子数: {}", newCandidates.size());
+        return newCandidates.size();
+    }
+
+    // ==================== 内部方法 ====================
+
+    /**
+     * 调整候选帖子的活跃度（需持有锁）
+     */
+    private void adjust(Long postId, double weight) {
+        Candidate candidate = candidates.get(postId);
+        if (candidate == null || weight == 0) {
+            return;
+        }
+        ranking.remove(candidate);
+        candidate.activity = Math.max(0, candidate.activity + weight);
+        candidate.score = candidate.activity * candidate.decay;
+        ranking.add(candidate);
+    }
+
+    /**
+     * 超出候选上限时淘汰热度最低的帖子（需持有锁）
+     */
+    private void trim() {
+        while (ranking.size() > maxCandidates) {
+            Candidate lowest = ranking.pollLast();
+            candidates.remove(lowest.postId);
+        }
+    }
+
+    private double decayFactor(LocalDateTime createdDate) {
+        return decayFactor(createdDate, epochMillis);
+    }
+
+    private double decayFactor(LocalDateTime createdDate, long epoch) {
+        long createdMillis = createdDate.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return Math.pow(2, (createdMillis - epoch) / halfLifeMillis);
+    }
+
+    private static int valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static final class Candidate {
+        private final long postId;
+        private final double decay;
+        private double activity;
+        private double score;
+
+        Candidate(long postId, double decay, double activity) {
+            this.postId = postId;
+            this.decay = decay;
+            this.activity = activity;
+            this.score = activity * decay;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.sg.nusiss.forum.service.forum;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * 点赞操作本地发件箱（内存映射的追加日志）
+ *
+ * 点赞/取消点赞在修改内存状态的同时追加一条定长记录到当前段文件，进程崩溃后重启时
+ * 按段和位置顺序重放尚未写入数据库的操作。ContentLikeStore 每次切换缓冲区时记录当前写入位置
+ * （{@link #roll()}），该批操作提交成功后把该位置之前的记录清零、删除更早的已封存段
+ * （{@link #release(Mark)}），提交失败时记录保留，等下次成功提交后再清除。
+ * 当前段在清空后从头复用，只有写满时才封存并打开新段，避免每次刷新都创建和映射新文件
+ * （映射区域要等 GC 才会释放，频繁映射可能耗尽 vm.max_map_count）。
+ *
+ * 记录格式（24 字节）：userId(8) contentId(8) 操作(1: 1 点赞 / 2 取消) 填充(3) CRC32(4)。
+ * 段文件预先分配并映射，未写入的位置全为 0；并发追加时先原子分配位置再写入，
+ * 重放时扫描整个段并跳过全 0 或校验失败的记录（崩溃时写了一半的记录）。
+ * 同一用户的操作在用户锁内追加，位置顺序即操作顺序。
+ *
+ * 写入内存映射区域后即使 JVM 崩溃也不会丢失；操作系统崩溃时可能丢失尚未刷盘的页。
+ */
+@Slf4j
+@Component
+public class LikeOutbox {
+
+    static final int RECORD_SIZE = 24;
+    private static final byte OP_LIKE = 1;
+    private static final byte OP_UNLIKE = 2;
+    private static final String SEGMENT_PREFIX = "like-outbox-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentCapacity;
+
+    // 当前可写段（追加在 ContentLikeStore 的缓冲区读锁内进行，切换和清除在写锁内进行）
+    private volatile Segment current;
+    // 已封存、等待提交成功后删除的段
+    private final List<Segment> sealed = new ArrayList<>();
+
+    public LikeOutbox(@Value("${forum.like.outbox.enabled:true}") boolean enabled,
+                      @Value("${forum.like.outbox.dir:${java.io.tmpdir}/gamevault-forum/like-outbox}") String directory,
+                      @Value("${forum.like.outbox.segment-records:200000}") int segmentRecords,
+                      MeterRegistry meterRegistry) {
+        if (segmentRecords <= 0) {
+            throw new IllegalArgumentException("发件箱段容量必须为正数");
+        }
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentCapacity = segmentRecords * RECORD_SIZE;
+
+        Gauge.builder("forum.like.outbox.segments", this, LikeOutbox::getSegmentCount)
+                .description("发件箱中尚未删除的段文件数")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ==================== 恢复 ====================
+
+    /**
+     * 读取崩溃前遗留的全部段（按段号、位置顺序），并打开新的可写段
+     * 遗留段作为已封存段保留，待重放的操作提交成功后删除
+     */
+    public synchronized List<Operation> recover() {
+        List<Operation> operations = new ArrayList<>();
+        if (!enabled) {
+            return operations;
+        }
+        try {
+            Files.createDirectories(directory);
+            long nextId = 1;
+            for (Path file : listSegmentFiles()) {
+                long id = segmentId(file);
+                nextId = Math.max(nextId, id + 1);
+                int before = operations.size();
+                readSegment(file, operations);
+                sealed.add(new Segment(id, file, null, null));
+                log.info("重放点赞发件箱段 - 文件: {}, 操作数: {}", file.getFileName(), operations.size() - before);
+            }
+            current = openSegment(nextId);
+            return operations;
+        } catch (IOException e) {
+            throw new UncheckedIOException("点赞发件箱恢复失败: " + directory, e);
+        }
+    }
+
+    // ==================== 追加 ====================
+
+    /**
+     * 追加一条操作记录
+     * @return false 表示当前段已写满（调用方应先刷新切换段后再重试）
+     */
+    public boolean append(long userId, long contentId, boolean liked) {
+        if (!enabled) {
+            return true;
+        }
+        Segment segment = current;
+        int position;
+        do {
+            position = segment.position.get();
+            if (position + RECORD_SIZE > segmentCapacity) {
+                return false;
+            }
+        } while (!segment.position.compareAndSet(position, position + RECORD_SIZE));
+
+        byte op = liked ? OP_LIKE : OP_UNLIKE;
+        CRC32 crc = new CRC32();
+        crc.update(longBytes(userId));
+        crc.update(longBytes(contentId));
+        crc.update(op);
+
+        // 绝对位置写入，不修改缓冲区的 position，并发写入互不相交的区域
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putLong(position, userId);
+        buffer.putLong(position + 8, contentId);
+        buffer.put(position + 16, op);
+        buffer.putInt(position + 20, (int) crc.getValue());
+        return true;
+    }
+
+    // ==================== 段切换 ====================
+
+    /**
+     * 记录当前写入位置，当前段已写满时封存并打开新段（调用方需保证期间没有并发追加）
+     * @return 本批操作的结束位置，提交成功后传给 {@link #release(Mark)}
+     */
+    public synchronized Mark roll() {
+        if (!enabled) {
+            return Mark.NONE;
+        }
+        Segment segment = current;
+        if (segment.position.get() + RECORD_SIZE <= segmentCapacity) {
+            return new Mark(segment.id, segment.position.get());
+        }
+        try {
+            current = openSegment(segment.id + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("点赞发件箱切换段失败", e);
+        }
+        segment.close();
+        sealed.add(segment);
+        return new Mark(current.id, 0);
+    }
+
+    /**
+     * 清除 mark 之前的全部记录（其中的操作已提交到数据库）：删除更早的已封存段，
+     * 当前段中的记录清零；mark 之后没有新记录时当前段从头复用
+     * （调用方需保证期间没有并发追加）
+     */
+    public synchronized void release(Mark mark) {
+        if (!enabled) {
+            return;
+        }
+        Segment active = current;
+        if (active != null && active.id == mark.segmentId()) {
+            active.clear(mark.position());
+        }
+        sealed.removeIf(segment -> {
+            if (segment.id >= mark.segmentId()) {
+                return false;
+            }
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                log.warn("删除点赞发件箱段失败 - 文件: {}, 错误: {}", segment.file, e.getMessage());
+                return false;
+            }
+            return true;
+        });
+    }
+
+    /**
+     * 关闭当前段（应用关闭时调用），段内没有记录时直接删除
+     */
+    public synchronized void close() {
+        Segment segment = current;
+        if (segment == null) {
+            return;
+        }
+        current = null;
+        boolean empty = segment.position.get() == segment.cleared;
+        segment.close();
+        if (empty) {
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                log.warn("删除空的点赞发件箱段失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    public synchronized int getSegmentCount() {
+        return sealed.size() + (current != null ? 1 : 0);
+    }
+
+    // ==================== 内部方法 ====================
+
+    private Segment openSegment(long id) throws IOException {
+        Path file = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentCapacity);
+        return new Segment(id, file, channel, buffer);
+    }
+
+    private void readSegment(Path file, List<Operation> operations) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < RECORD_SIZE) {
+                return;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int skipped = 0;
+            for (int position = 0; position + RECORD_SIZE <= size; position += RECORD_SIZE) {
+                long userId = buffer.getLong(position);
+                long contentId = buffer.getLong(position + 8);
+                byte op = buffer.get(position + 16);
+                int checksum = buffer.getInt(position + 20);
+                if (op == 0 && userId == 0 && contentId == 0) {
+                    continue;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(longBytes(userId));
+                crc.update(longBytes(contentId));
+                crc.update(op);
+                if ((int) crc.getValue() != checksum || (op != OP_LIKE && op != OP_UNLIKE)) {
+                    skipped++;
+                    continue;
+                }
+                operations.add(new Operation(userId, contentId, op == OP_LIKE));
+            }
+            if (skipped > 0) {
+                log.warn("点赞发件箱段中有损坏的记录已跳过 - 文件: {}, 数量: {}", file.getFileName(), skipped);
+            }
+        }
+    }
+
+    private List<Path> listSegmentFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort((a, b) -> Long.compare(segmentId(a), segmentId(b)));
+        return files;
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static byte[] longBytes(long value) {
+        byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+
+    /**
+     * 发件箱中的位置：段号及段内偏移
+     */
+    public record Mark(long segmentId, int position) {
+        static final Mark NONE = new Mark(0, 0);
+    }
+
+    /**
+     * 重放的点赞操作
+     */
+    public record Operation(long userId, long contentId, boolean liked) {
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger position = new AtomicInteger();
+        // 已清零（已提交）的记录的结束位置
+        private int cleared;
+
+        Segment(long id, Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * 把 [cleared, end) 内的记录清零，重放时跳过；之后没有新记录时位置归零从头复用
+         */
+        void clear(int end) {
+            for (int offset = cleared; offset < end; offset += 8) {
+                buffer.putLong(offset, 0L);
+            }
+            cleared = Math.max(cleared, end);
+            if (position.get() == cleared) {
+                position.set(0);
+                cleared = 0;
+            }
+        }
+
+        void close() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭点赞发件箱段失败 - 文件: {}, 错误: {}", file, e.getMessage());
+            }
+        }
+    }
+}
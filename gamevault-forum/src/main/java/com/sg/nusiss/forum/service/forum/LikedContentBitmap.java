@@ -0,0 +1,288 @@
+package com.sg.nusiss.forum.service.forum;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 用户已点赞内容ID的压缩位图（不可变）
+ *
+ * 按 Roaring Bitmap 的方式分块：内容ID的高位（id >> 16）作为块键，低 16 位存放在块中。
+ * 块内元素不超过 4096 个时用有序 char 数组（每个 2 字节），超过后改用 65536 位的位图（固定 8KB），
+ * 内容ID通常是连续分配的，同一用户点赞的内容大多落在少数几个块里。
+ *
+ * 实例不可变，{@link #with(long)} / {@link #without(long)} 只复制被修改的块并返回新实例，
+ * 读取无需加锁；修改频率远低于读取（每次点赞一次，而每页渲染都要查一批）。
+ */
+final class LikedContentBitmap {
+
+    static final LikedContentBitmap EMPTY = new LikedContentBitmap(new long[0], new Container[0], 0);
+
+    // 数组块的最大元素数，超过后转为位图块（两者占用相同）
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    // 对象头、引用和数组头的估算大小（压缩指针）
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int ARRAY_OVERHEAD = 16;
+    private static final int REFERENCE_SIZE = 4;
+
+    private final long[] keys;
+    private final Container[] containers;
+    private final int cardinality;
+
+    private LikedContentBitmap(long[] keys, Container[] containers, int cardinality) {
+        this.keys = keys;
+        this.containers = containers;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * 由内容ID集合构建（可以无序、可以重复）
+     */
+    static LikedContentBitmap of(Collection<Long> contentIds) {
+        if (contentIds == null || contentIds.isEmpty()) {
+            return EMPTY;
+        }
+        long[] ids = new long[contentIds.size()];
+        int n = 0;
+        for (Long id : contentIds) {
+            if (id != null) {
+                ids[n++] = id;
+            }
+        }
+        Arrays.sort(ids, 0, n);
+
+        List<Long> keyList = new ArrayList<>();
+        List<Container> containerList = new ArrayList<>();
+        int total = 0;
+        int start = 0;
+        while (start < n) {
+            long key = highBits(ids[start]);
+            char[] values = new char[Math.min(n - start, 1 << 16)];
+            int count = 0;
+            int i = start;
+            for (; i < n && highBits(ids[i]) == key; i++) {
+                char low = lowBits(ids[i]);
+                if (count == 0 || values[count - 1] != low) {
+                    values[count++] = low;
+                }
+            }
+            keyList.add(key);
+            containerList.add(Container.fromSorted(values, count));
+            total += count;
+            start = i;
+        }
+
+        long[] keys = new long[keyList.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keyList.get(i);
+        }
+        return new LikedContentBitmap(keys, containerList.toArray(new Container[0]), total);
+    }
+
+    boolean contains(long contentId) {
+        int index = Arrays.binarySearch(keys, highBits(contentId));
+        return index >= 0 && containers[index].contains(lowBits(contentId));
+    }
+
+    /**
+     * @return 加入 contentId 后的位图，已存在时返回自身
+     */
+    LikedContentBitmap with(long contentId) {
+        long key = highBits(contentId);
+        char low = lowBits(contentId);
+        int index = Arrays.binarySearch(keys, key);
+        if (index >= 0) {
+            Container container = containers[index];
+            if (container.contains(low)) {
+                return this;
+            }
+            Container[] newContainers = containers.clone();
+            newContainers[index] = container.add(low);
+            return new LikedContentBitmap(keys, newContainers, cardinality + 1);
+        }
+
+        int insertAt = -index - 1;
+        long[] newKeys = new long[keys.length + 1];
+        Container[] newContainers = new Container[containers.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, insertAt);
+        System.arraycopy(containers, 0, newContainers, 0, insertAt);
+        newKeys[insertAt] = key;
+        newContainers[insertAt] = Container.fromSorted(new char[]{low}, 1);
+        System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+        System.arraycopy(containers, insertAt, newContainers, insertAt + 1, containers.length - insertAt);
+        return new LikedContentBitmap(newKeys, newContainers, cardinality + 1);
+    }
+
+    /**
+     * @return 移除 contentId 后的位图，不存在时返回自身
+     */
+    LikedContentBitmap without(long contentId) {
+        int index = Arrays.binarySearch(keys, highBits(contentId));
+        if (index < 0) {
+            return this;
+        }
+        char low = lowBits(contentId);
+        Container container = containers[index];
+        if (!container.contains(low)) {
+            return this;
+        }
+        if (container.cardinality == 1) {
+            // 块已空，删除块
+            long[] newKeys = new long[keys.length - 1];
+            Container[] newContainers = new Container[containers.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(containers, 0, newContainers, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(containers, index + 1, newContainers, index, containers.length - index - 1);
+            return new LikedContentBitmap(newKeys, newContainers, cardinality - 1);
+        }
+        Container[] newContainers = containers.clone();
+        newContainers[index] = container.remove(low);
+        return new LikedContentBitmap(keys, newContainers, cardinality - 1);
+    }
+
+    LikedContentBitmap with(long contentId, boolean liked) {
+        return liked ? with(contentId) : without(contentId);
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * 按内容ID升序返回全部元素
+     */
+    List<Long> toList() {
+        List<Long> result = new ArrayList<>(cardinality);
+        for (int i = 0; i < keys.length; i++) {
+            containers[i].appendTo(keys[i] << 16, result);
+        }
+        return result;
+    }
+
+    /**
+     * 估算占用的堆内存（字节），用于缓存按内存容量淘汰
+     */
+    int sizeInBytes() {
+        long size = OBJECT_OVERHEAD
+                + ARRAY_OVERHEAD + 8L * keys.length
+                + ARRAY_OVERHEAD + (long) REFERENCE_SIZE * containers.length;
+        for (Container container : containers) {
+            size += container.sizeInBytes();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    private static long highBits(long contentId) {
+        return contentId >> 16;
+    }
+
+    private static char lowBits(long contentId) {
+        return (char) contentId;
+    }
+
+    /**
+     * 一个块（高位相同的最多 65536 个元素），array 和 bitmap 只有一个非空
+     */
+    private static final class Container {
+        private final char[] array;
+        private final long[] bitmap;
+        private final int cardinality;
+
+        private Container(char[] array, long[] bitmap, int cardinality) {
+            this.array = array;
+            this.bitmap = bitmap;
+            this.cardinality = cardinality;
+        }
+
+        static Container fromSorted(char[] values, int count) {
+            if (count <= ARRAY_MAX) {
+                return new Container(Arrays.copyOf(values, count), null, count);
+            }
+            long[] bits = new long[BITMAP_WORDS];
+            for (int i = 0; i < count; i++) {
+                bits[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new Container(null, bits, count);
+        }
+
+        boolean contains(char value) {
+            if (bitmap != null) {
+                return (bitmap[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(array, value) >= 0;
+        }
+
+        /**
+         * 调用方保证 value 不存在
+         */
+        Container add(char value) {
+            if (bitmap != null) {
+                long[] bits = bitmap.clone();
+                bits[value >>> 6] |= 1L << value;
+                return new Container(null, bits, cardinality + 1);
+            }
+            int insertAt = -Arrays.binarySearch(array, value) - 1;
+            char[] values = new char[array.length + 1];
+            System.arraycopy(array, 0, values, 0, insertAt);
+            values[insertAt] = value;
+            System.arraycopy(array, insertAt, values, insertAt + 1, array.length - insertAt);
+            return fromSorted(values, values.length);
+        }
+
+        /**
+         * 调用方保证 value 存在
+         */
+        Container remove(char value) {
+            if (bitmap != null) {
+                if (cardinality - 1 <= ARRAY_MAX) {
+                    // 元素数回落到阈值以下，转回数组块
+                    char[] values = new char[cardinality - 1];
+                    int n = 0;
+                    for (int v = 0; v < (1 << 16); v++) {
+                        if (v != value && (bitmap[v >>> 6] & (1L << v)) != 0) {
+                            values[n++] = (char) v;
+                        }
+                    }
+                    return new Container(values, null, n);
+                }
+                long[] bits = bitmap.clone();
+                bits[value >>> 6] &= ~(1L << value);
+                return new Container(null, bits, cardinality - 1);
+            }
+            int index = Arrays.binarySearch(array, value);
+            char[] values = new char[array.length - 1];
+            System.arraycopy(array, 0, values, 0, index);
+            System.arraycopy(array, index + 1, values, index, array.length - index - 1);
+            return new Container(values, null, values.length);
+        }
+
+        void appendTo(long base, List<Long> result) {
+            if (bitmap != null) {
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    long bits = bitmap[word];
+                    while (bits != 0) {
+                        int bit = Long.numberOfTrailingZeros(bits);
+                        result.add(base | ((long) word << 6) | bit);
+                        bits &= bits - 1;
+                    }
+                }
+                return;
+            }
+            for (char value : array) {
+                result.add(base | value);
+            }
+        }
+
+        long sizeInBytes() {
+            long size = OBJECT_OVERHEAD + REFERENCE_SIZE * 2L + 4;
+            if (bitmap != null) {
+                return size + ARRAY_OVERHEAD + 8L * bitmap.length;
+            }
+            return size + ARRAY_OVERHEAD + 2L * array.length;
+        }
+    }
+}
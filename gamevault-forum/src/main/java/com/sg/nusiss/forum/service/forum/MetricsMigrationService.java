@@ -0,0 +1,147 @@
+package com.sg.nusiss.forum.service.forum;
+
+import com.sg.nusiss.forum.entity.ContentCounterDiff;
+import com.sg.nusiss.forum.repository.ForumMetricMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * content_metrics → content_counters 宽表迁移
+ *
+ * 迁移步骤：
+ * 1. 部署双写版本（forum.metrics.read-counters=false，仍读 content_metrics）
+ * 2. 执行 {@link #backfill()} 把已有统计复制到宽表
+ * 3. 执行 {@link #verify()}，确认没有不一致
+ * 4. 设置 forum.metrics.read-counters=true 后重启，读取切换到宽表；回退时改回 false 即可
+ *
+ * 回填按 content_id 分批，每批在独立事务中先锁定 content_counters 再覆盖写入：
+ * 双写语句会在锁上等待，锁定后读取的 content_metrics 已包含此前提交的全部写入，
+ * 等待中的写入在回填提交后再同时加到两张表上，因此回填不会覆盖掉并发的增量。
+ * 每批只锁一小段时间，写入最多延迟一个批次。
+ */
+@Slf4j
+@Service
+public class MetricsMigrationService {
+
+    private static final int SAMPLE_LIMIT = 20;
+
+    private final ForumMetricMapper metricMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final boolean runOnStartup;
+
+    public MetricsMigrationService(ForumMetricMapper metricMapper,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${forum.metrics.migration.chunk-size:1000}") int chunkSize,
+                                   @Value("${forum.metrics.migration.run-on-startup:false}") boolean runOnStartup) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("迁移批次大小必须为正数");
+        }
+        this.metricMapper = metricMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.runOnStartup = runOnStartup;
+    }
+
+    /**
+     * 启动后在后台执行回填和校验（forum.metrics.migration.run-on-startup=true 时）
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (!runOnStartup) {
+            return;
+        }
+        try {
+            backfill();
+            verify();
+        } catch (Exception e) {
+            log.error("统计宽表迁移失败", e);
+        }
+    }
+
+    /**
+     * 把 content_metrics 中的统计值复制到 content_counters，可重复执行
+     * @return 回填的内容数
+     */
+    public long backfill() {
+        long started = System.currentTimeMillis();
+        long total = 0;
+        long afterId = 0L;
+        while (true) {
+            List<Long> ids = metricMapper.findMetricContentIds(afterId, chunkSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            // 最后一批不设上界，把分批期间新增的内容也包括进来
+            long fromId = afterId;
+            long toId = ids.size() < chunkSize ? Long.MAX_VALUE : ids.get(ids.size() - 1);
+            Integer rows = transactionTemplate.execute(status -> {
+                metricMapper.lockCountersForBackfill();
+                return metricMapper.backfillCounters(fromId, toId);
+            });
+            total += rows != null ? rows : 0;
+            if (toId == Long.MAX_VALUE) {
+                break;
+            }
+            afterId = toId;
+        }
+        log.info("统计宽表回填完成 - 内容数: {}, 耗时: {}ms", total, System.currentTimeMillis() - started);
+        return total;
+    }
+
+    /**
+     * 逐批对比两张表的统计值
+     */
+    public VerificationReport verify() {
+        long checked = 0;
+        long mismatched = 0;
+        List<ContentCounterDiff> samples = new ArrayList<>();
+        long afterId = 0L;
+        while (true) {
+            List<Long> ids = metricMapper.findMetricContentIds(afterId, chunkSize);
+            long toId = ids.size() < chunkSize ? Long.MAX_VALUE : ids.get(ids.size() - 1);
+            List<ContentCounterDiff> diffs = metricMapper.findCounterMismatches(afterId, toId);
+            checked += ids.size();
+            mismatched += diffs.size();
+            for (ContentCounterDiff diff : diffs) {
+                if (samples.size() >= SAMPLE_LIMIT) {
+                    break;
+                }
+                samples.add(diff);
+            }
+            if (toId == Long.MAX_VALUE) {
+                break;
+            }
+            afterId = toId;
+        }
+
+        VerificationReport report = new VerificationReport(checked, mismatched, samples);
+        if (report.isConsistent()) {
+            log.info("统计宽表校验通过 - 内容数: {}", checked);
+        } else {
+            log.warn("统计宽表校验发现不一致 - 内容数: {}, 不一致: {}, 示例: {}", checked, mismatched, samples);
+        }
+        return report;
+    }
+
+    /**
+     * 校验结果
+     * @param checked 检查的内容数
+     * @param mismatched 不一致的内容数
+     * @param samples 不一致示例（最多 20 条）
+     */
+    public record VerificationReport(long checked, long mismatched, List<ContentCounterDiff> samples) {
+        public boolean isConsistent() {
+            return mismatched == 0;
+        }
+    }
+}
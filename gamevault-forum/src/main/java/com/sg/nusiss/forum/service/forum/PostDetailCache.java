@@ -0,0 +1,120 @@
+package com.sg.nusiss.forum.service.forum;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sg.nusiss.common.transaction.TransactionUtils;
+import com.sg.nusiss.forum.entity.ForumContent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 帖子详情缓存（cache-aside）
+ *
+ * 缓存 findById 的结果（含作者信息，不含当前用户的点赞状态）。同一帖子的并发未命中
+ * 只会执行一次加载，其他请求等待同一结果，热门帖子不会同时触发大量相同查询。
+ * 帖子修改/删除、回复增删时在事务提交后失效；缓存带 TTL，兜底其他实例写入造成的偏差。
+ *
+ * 浏览量缓冲刷新后会把增量累加到缓存条目上，读取时仍需合并未刷新的增量；
+ * 点赞数由调用方从点赞存储中读取，不依赖缓存中的值。
+ * 返回给调用方的是副本，调用方可以自由修改。
+ */
+@Component
+public class PostDetailCache {
+
+    private final Cache<Long, Entry> cache;
+
+    public PostDetailCache(@Value("${forum.post-cache.max-size:10000}") long maxSize,
+                           @Value("${forum.post-cache.ttl-seconds:60}") long ttlSeconds,
+                           MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+
+        // 提供 cache.gets{result=hit|miss} 等指标，命中率 = hit / (hit + miss)
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "forum.post_detail");
+    }
+
+    /**
+     * 获取帖子详情，未命中时调用 loader 加载（同一帖子的并发加载只执行一次）
+     * @return 帖子副本；帖子不存在时返回 null（不缓存）
+     */
+    public ForumContent get(Long postId, Function<Long, ForumContent> loader) {
+        Entry entry = cache.get(postId, id -> {
+            ForumContent post = loader.apply(id);
+            return post != null ? new Entry(post) : null;
+        });
+        return entry != null ? entry.copy() : null;
+    }
+
+    /**
+     * 在事务提交后失效帖子详情（无事务时立即失效）
+     */
+    public void invalidate(Long postId) {
+        if (postId == null) {
+            return;
+        }
+        TransactionUtils.afterCommit(() -> cache.invalidate(postId));
+    }
+
+    /**
+     * 累加已刷新到数据库的浏览增量（浏览量缓冲刷新成功后调用）
+     * 不刷新条目的写入时间，也不计入命中统计
+     */
+    public void addViews(Map<Long, Long> deltas) {
+        deltas.forEach((postId, delta) -> {
+            Entry entry = cache.policy().getIfPresentQuietly(postId);
+            if (entry != null) {
+                entry.flushedViews.addAndGet(delta);
+            }
+        });
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * 缓存条目：快照本身不再修改，浏览增量单独累加
+     */
+    private static final class Entry {
+        private final ForumContent snapshot;
+        private final AtomicLong flushedViews = new AtomicLong();
+
+        Entry(ForumContent snapshot) {
+            this.snapshot = snapshot;
+            snapshot.setIsLikedByCurrentUser(null);
+        }
+
+        ForumContent copy() {
+            ForumContent post = new ForumContent();
+            post.setContentId(snapshot.getContentId());
+            post.setContentType(snapshot.getContentType());
+            post.setTitle(snapshot.getTitle());
+            post.setBody(snapshot.getBody());
+            post.setBodyPlain(snapshot.getBodyPlain());
+            post.setAuthorId(snapshot.getAuthorId());
+            post.setParentId(snapshot.getParentId());
+            post.setReplyTo(snapshot.getReplyTo());
+            post.setStatus(snapshot.getStatus());
+            post.setCreatedDate(snapshot.getCreatedDate());
+            // setBody 会改写 updatedDate，需放在其后
+            post.setUpdatedDate(snapshot.getUpdatedDate());
+            post.setLikeCount(snapshot.getLikeCount());
+            post.setReplyCount(snapshot.getReplyCount());
+            int views = snapshot.getViewCount() != null ? snapshot.getViewCount() : 0;
+            post.setViewCount((int) (views + flushedViews.get()));
+            post.setAuthorName(snapshot.getAuthorName());
+            post.setAuthorAvatar(snapshot.getAuthorAvatar());
+            return post;
+        }
+    }
+}
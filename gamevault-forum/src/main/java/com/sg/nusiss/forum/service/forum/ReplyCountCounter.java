@@ -0,0 +1,123 @@
+package com.sg.nusiss.forum.service.forum;
+
+import com.sg.nusiss.forum.entity.ContentMetric;
+import com.sg.nusiss.forum.repository.ForumMetricMapper;
+import com.sg.nusiss.forum.repository.ForumPostSummaryMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 帖子回复数分片计数器
+ *
+ * 热门帖子的每条回复都要给同一行 content_metrics / post_summary 加一，并发回复会在行锁上排队
+ * （锁一直持有到 createReply 事务提交）。启用分片后（forum.reply-count.slots 大于 1），
+ * 每次写入随机累加到 content_metric_slots 的一个槽位，并发回复大概率落在不同行上；
+ * ForumMetricMapper 读取 reply_count 时会加上槽位之和，定时合并任务再把槽位增量
+ * 批量写回 content_metrics 和 post_summary（列表中的回复数最多滞后一个合并周期）。
+ * slots = 1 时直接更新原有行。
+ */
+@Slf4j
+@Component
+public class ReplyCountCounter {
+
+    static final String METRIC_NAME = "reply_count";
+
+    private final ForumMetricMapper metricMapper;
+    private final ForumPostSummaryMapper summaryMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int slots;
+
+    // 防止定时合并并发执行
+    private final ReentrantLock compactLock = new ReentrantLock();
+
+    private final AtomicLong compactedPosts = new AtomicLong();
+    private final AtomicLong failedCompactions = new AtomicLong();
+
+    public ReplyCountCounter(ForumMetricMapper metricMapper,
+                             ForumPostSummaryMapper summaryMapper,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${forum.reply-count.slots:8}") int slots,
+                             MeterRegistry meterRegistry) {
+        if (slots <= 0 || slots > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("回复数槽位数必须在 1 ~ " + Short.MAX_VALUE + " 之间");
+        }
+        this.metricMapper = metricMapper;
+        this.summaryMapper = summaryMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.slots = slots;
+
+        FunctionCounter.builder("forum.reply_count.compacted.posts", compactedPosts, AtomicLong::get)
+                .description("合并过分片增量的帖子数")
+                .register(meterRegistry);
+        FunctionCounter.builder("forum.reply_count.compaction.failures", failedCompactions, AtomicLong::get)
+                .description("分片合并失败次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 调整帖子回复数（在调用方事务中执行）
+     */
+    public void increment(Long postId, int delta) {
+        if (slots == 1) {
+            metricMapper.incrementMetric(postId, METRIC_NAME, delta);
+            summaryMapper.incrementReplyCount(postId, delta);
+            return;
+        }
+        int slot = ThreadLocalRandom.current().nextInt(slots);
+        metricMapper.incrementMetricSlot(postId, METRIC_NAME, slot, delta);
+    }
+
+    /**
+     * 把全部槽位增量合并回 content_metrics 和 post_summary
+     * 取出和写回在同一事务中，失败时槽位行随事务回滚保留，等待下次合并
+     * @return 合并的帖子数
+     */
+    public int compact() {
+        compactLock.lock();
+        try {
+            Integer merged = transactionTemplate.execute(status -> {
+                List<ContentMetric> drained = metricMapper.drainMetricSlots(METRIC_NAME);
+                // 按内容ID排序写回，降低与其他批量更新发生死锁的概率
+                Map<Long, Long> deltas = new TreeMap<>();
+                for (ContentMetric metric : drained) {
+                    if (metric.getMetricValue() != null && metric.getMetricValue() != 0) {
+                        deltas.put(metric.getContentId(), metric.getMetricValue().longValue());
+                    }
+                }
+                if (deltas.isEmpty()) {
+                    return 0;
+                }
+                metricMapper.batchIncrementMetric(METRIC_NAME, deltas);
+                summaryMapper.batchIncrementReplyCount(deltas);
+                return deltas.size();
+            });
+            int count = merged != null ? merged : 0;
+            if (count > 0) {
+                compactedPosts.addAndGet(count);
+                log.debug("回复数分片合并完成 - 帖子数: {}", count);
+            }
+            return count;
+        } catch (Exception e) {
+            failedCompactions.incrementAndGet();
+            log.error("回复数分片合并失败，槽位保留到下次合并: {}", e.getMessage());
+            return 0;
+        } finally {
+            compactLock.unlock();
+        }
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+}
@@ -0,0 +1,172 @@
+package com.sg.nusiss.forum.service.forum;
+
+import com.sg.nusiss.common.dto.UserDTO;
+import com.sg.nusiss.forum.dto.ReplyResponseDTO;
+import com.sg.nusiss.forum.entity.ForumContent;
+import com.sg.nusiss.forum.repository.ForumContentMapper;
+import com.sg.nusiss.forum.repository.ForumMetricMapper;
+import com.sg.nusiss.forum.service.user.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 回复树加载器
+ *
+ * 一页回复的数据全部批量获取，往返次数与每页数量无关：
+ * 1. 回复（树形模式下一条递归查询取回根回复及全部楼中楼）
+ * 2. 缺失的点赞数 —— 至多一次 getBatchMetrics（post_summary 有数据时为 0 次）
+ * 3. 被回复的目标回复 —— 至多一次按主键批量查询（树形模式下目标都在本页内，为 0 次）
+ * 4. 作者和被回复用户 —— 一次 getUsersByIds（缓存命中时不访问 Auth 服务）
+ * 5. 当前用户的点赞状态 —— 一次 batchCheckLikeStatus（内存查找）
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReplyThreadLoader {
+
+    private final ForumContentMapper contentMapper;
+    private final ForumMetricMapper metricMapper;
+    private final UserService userService;
+    private final ForumContentLikeService contentLikeService;
+    private final ForumCountService countService;
+
+    /**
+     * 加载一页根回复及其楼中楼，返回树形结构（楼中楼放在 children 中）
+     * 目标已删除的楼中楼作为根回复返回，其下的回复仍挂在它下面
+     */
+    public List<ReplyResponseDTO> loadThread(Long postId, int page, int size, Long currentUserId) {
+        if (postId == null) {
+            throw new IllegalArgumentException("帖子ID不能为空");
+        }
+        if (page < 0) page = 0;
+        if (size <= 0 || size > 100) size = 20;
+
+        List<ForumContent> replies = contentMapper.findReplyThread(postId, page * size, size);
+        if (replies.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        hydrate(replies, currentUserId);
+
+        Map<Long, ReplyResponseDTO> dtoMap = new LinkedHashMap<>();
+        for (ReplyResponseDTO dto : toResponseDTOs(replies)) {
+            dtoMap.put(dto.getReplyId(), dto);
+        }
+
+        List<ReplyResponseDTO> roots = new ArrayList<>();
+        for (ReplyResponseDTO dto : dtoMap.values()) {
+            ReplyResponseDTO target = dto.getReplyTo() != null ? dtoMap.get(dto.getReplyTo()) : null;
+            if (target == null) {
+                roots.add(dto);
+            } else {
+                if (target.getChildren() == null) {
+                    target.setChildren(new ArrayList<>());
+                }
+                target.getChildren().add(dto);
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * 统计根回复数量（树形分页的总数）
+     */
+    public int countRootReplies(Long postId) {
+        if (postId == null) {
+            throw new IllegalArgumentException("帖子ID不能为空");
+        }
+        return countService.getRootReplyCount(postId);
+    }
+
+    /**
+     * 补全回复的点赞数和当前用户的点赞状态
+     */
+    public void hydrate(List<ForumContent> replies, Long currentUserId) {
+        if (replies.isEmpty()) {
+            return;
+        }
+
+        List<Long> missingCounts = new ArrayList<>();
+        for (ForumContent reply : replies) {
+            if (reply.getLikeCount() == null) {
+                missingCounts.add(reply.getContentId());
+            }
+        }
+        Map<Long, Integer> likeCounts = missingCounts.isEmpty()
+                ? Map.of()
+                : metricMapper.getBatchMetrics(missingCounts, "like_count");
+
+        for (ForumContent reply : replies) {
+            int base = reply.getLikeCount() != null
+                    ? reply.getLikeCount()
+                    : likeCounts.getOrDefault(reply.getContentId(), 0);
+            reply.setLikeCount(Math.max(0, base + contentLikeService.getPendingLikeDelta(reply.getContentId())));
+        }
+
+        if (currentUserId != null) {
+            List<Long> replyIds = replies.stream().map(ForumContent::getContentId).toList();
+            Map<Long, Boolean> likeStatus = contentLikeService.batchCheckLikeStatus(currentUserId, replyIds);
+            for (ForumContent reply : replies) {
+                reply.setIsLikedByCurrentUser(likeStatus.getOrDefault(reply.getContentId(), false));
+            }
+        }
+    }
+
+    /**
+     * 转换为 DTO，批量解析作者和被回复用户
+     */
+    public List<ReplyResponseDTO> toResponseDTOs(List<ForumContent> replies) {
+        if (replies.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // 被回复目标的作者：本页内直接取，本页外的目标批量查询
+        Map<Long, Long> targetAuthors = new HashMap<>();
+        for (ForumContent reply : replies) {
+            targetAuthors.put(reply.getContentId(), reply.getAuthorId());
+        }
+        List<Long> missingTargets = new ArrayList<>();
+        for (ForumContent reply : replies) {
+            Long replyTo = reply.getReplyTo();
+            if (replyTo != null && !targetAuthors.containsKey(replyTo) && !missingTargets.contains(replyTo)) {
+                missingTargets.add(replyTo);
+            }
+        }
+        if (!missingTargets.isEmpty()) {
+            for (ForumContent target : contentMapper.findActiveByIds(missingTargets)) {
+                targetAuthors.put(target.getContentId(), target.getAuthorId());
+            }
+        }
+
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (ForumContent reply : replies) {
+            userIds.add(reply.getAuthorId());
+            if (reply.getReplyTo() != null && targetAuthors.get(reply.getReplyTo()) != null) {
+                userIds.add(targetAuthors.get(reply.getReplyTo()));
+            }
+        }
+        Map<Long, UserDTO> users = new HashMap<>();
+        for (UserDTO user : userService.getUsersByIds(new ArrayList<>(userIds))) {
+            users.put(user.getUserId(), user);
+        }
+
+        List<ReplyResponseDTO> dtos = new ArrayList<>(replies.size());
+        for (ForumContent reply : replies) {
+            UserDTO author = users.get(reply.getAuthorId());
+            UserDTO replyToUser = reply.getReplyTo() != null
+                    ? users.get(targetAuthors.get(reply.getReplyTo()))
+                    : null;
+            dtos.add(ReplyResponseDTO.fromContentAndUsers(reply, author, replyToUser));
+        }
+        return dtos;
+    }
+}
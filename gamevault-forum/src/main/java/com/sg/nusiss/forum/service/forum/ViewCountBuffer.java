@@ -0,0 +1,254 @@
+package com.sg.nusiss.forum.service.forum;
+
+import com.sg.nusiss.forum.repository.ForumMetricMapper;
+import com.sg.nusiss.forum.repository.ForumPostSummaryMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * 浏览量写缓冲（write-behind）
+ * 浏览量先累加在内存中（每个帖子一个 LongAdder），由定时任务按
+ * forum.view-count.max-staleness-ms 周期合并为一条多行 upsert 写入数据库，
+ * 应用关闭时也会刷新一次。
+ *
+ * 读取浏览量 = 基数（数据库或帖子详情缓存）+ 未刷新增量（pending + inFlight）。
+ * 增量在 pending → inFlight → 基数之间转移的时刻（取出、提交并累加到缓存、失败回填）持有写锁，
+ * 读者通过 {@link #readConsistently} 读取基数和增量，不会看到同一批浏览被重复计算或暂时消失。
+ */
+@Slf4j
+@Component
+public class ViewCountBuffer {
+
+    private final ForumMetricMapper metricMapper;
+    private final ForumPostSummaryMapper summaryMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final HotPostRanker hotPostRanker;
+    private final PostDetailCache postDetailCache;
+
+    // 帖子ID -> 未刷新的浏览增量
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    // 正在写入数据库的增量，提交完成前仍计入读取结果，避免读到的浏览量回落
+    private final Map<Long, Long> inFlight = new ConcurrentHashMap<>();
+
+    // 增量转移（取出 / 提交可见 / 回填）时持写锁，读者乐观读取，冲突时退回读锁
+    private final StampedLock visibility = new StampedLock();
+
+    // 防止定时刷新与关闭刷新并发执行
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final AtomicLong flushedViews = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    public ViewCountBuffer(ForumMetricMapper metricMapper,
+                           ForumPostSummaryMapper summaryMapper,
+                           TransactionTemplate transactionTemplate,
+                           HotPostRanker hotPostRanker,
+                           PostDetailCache postDetailCache,
+                           MeterRegistry meterRegistry) {
+        this.metricMapper = metricMapper;
+        this.summaryMapper = summaryMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.hotPostRanker = hotPostRanker;
+        this.postDetailCache = postDetailCache;
+
+        Gauge.builder("forum.view_count.pending.posts", pending, Map::size)
+                .description("有未刷新浏览增量的帖子数")
+                .register(meterRegistry);
+        Gauge.builder("forum.view_count.pending.views", this, ViewCountBuffer::getPendingViewTotal)
+                .description("未刷新的浏览增量总数")
+                .register(meterRegistry);
+        FunctionCounter.builder("forum.view_count.flushed.views", flushedViews, AtomicLong::get)
+                .description("已刷新到数据库的浏览量")
+                .register(meterRegistry);
+        FunctionCounter.builder("forum.view_count.flush.failures", failedFlushes, AtomicLong::get)
+                .description("刷新失败次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录一次浏览
+     */
+    public void increment(Long postId) {
+        add(postId, 1);
+    }
+
+    /**
+     * 在映射的同步块内累加，保证不会累加到已被 {@link #drain()} 移除的 LongAdder 上
+     */
+    private void add(Long postId, long delta) {
+        pending.compute(postId, (id, adder) -> {
+            LongAdder target = adder != null ? adder : new LongAdder();
+            target.add(delta);
+            return target;
+        });
+    }
+
+    /**
+     * 在与增量转移互斥的视图中执行 reader：reader 读取基数并合并 {@link #getPendingDelta}，
+     * 期间发生转移时重新执行（reader 不能有需要撤销的副作用）
+     */
+    public <T> T readConsistently(Supplier<T> reader) {
+        long stamp = visibility.tryOptimisticRead();
+        if (stamp != 0) {
+            T result = reader.get();
+            if (visibility.validate(stamp)) {
+                return result;
+            }
+        }
+        stamp = visibility.readLock();
+        try {
+            return reader.get();
+        } finally {
+            visibility.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 获取帖子未刷新的浏览增量（读取 view_count 时合并，需在 {@link #readConsistently} 中与基数一起读取）
+     */
+    public long getPendingDelta(Long postId) {
+        if (postId == null) {
+            return 0;
+        }
+        LongAdder adder = pending.get(postId);
+        long delta = adder != null ? adder.sum() : 0;
+        return delta + inFlight.getOrDefault(postId, 0L);
+    }
+
+    /**
+     * 将累积的增量批量写入数据库
+     * 写入失败时增量会回填到缓冲区，等待下次刷新
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<Long, Long> deltas;
+            long stamp = visibility.writeLock();
+            try {
+                deltas = drain();
+            } finally {
+                visibility.unlockWrite(stamp);
+            }
+            if (deltas.isEmpty()) {
+                return;
+            }
+
+            try {
+                write(deltas);
+                long total = deltas.values().stream().mapToLong(Long::longValue).sum();
+                flushedViews.addAndGet(total);
+                hotPostRanker.recordViews(deltas);
+                log.debug("浏览量刷新完成 - 帖子数: {}, 浏览量: {}", deltas.size(), total);
+            } catch (Exception e) {
+                failedFlushes.incrementAndGet();
+                log.error("浏览量刷新失败，增量已回填 - 帖子数: {}, 错误: {}", deltas.size(), e.getMessage());
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 在一个事务中写入增量。语句在锁外执行（提交前其他连接读不到新值），
+     * 只有提交和随后的转移持写锁：提交成功时新基数可见的同时把增量累加到缓存并移出 inFlight，
+     * 失败时把增量从 inFlight 移回 pending
+     */
+    private void write(Map<Long, Long> deltas) {
+        PlatformTransactionManager transactionManager = transactionTemplate.getTransactionManager();
+        TransactionStatus transaction = transactionManager.getTransaction(transactionTemplate);
+        try {
+            metricMapper.batchIncrementMetric("view_count", deltas);
+            summaryMapper.batchIncrementViewCount(deltas);
+        } catch (RuntimeException e) {
+            try {
+                transactionManager.rollback(transaction);
+            } finally {
+                long stamp = visibility.writeLock();
+                try {
+                    restore(deltas);
+                } finally {
+                    visibility.unlockWrite(stamp);
+                }
+            }
+            throw e;
+        }
+
+        long stamp = visibility.writeLock();
+        try {
+            boolean committed = false;
+            try {
+                transactionManager.commit(transaction);
+                committed = true;
+            } finally {
+                if (committed) {
+                    postDetailCache.addViews(deltas);
+                    inFlight.clear();
+                } else {
+                    restore(deltas);
+                }
+            }
+        } finally {
+            visibility.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 增量从 inFlight 移回 pending（调用方持有写锁）
+     */
+    private void restore(Map<Long, Long> deltas) {
+        inFlight.clear();
+        deltas.forEach(this::add);
+    }
+
+    /**
+     * 取出所有非零增量（调用方持有写锁）
+     * 本轮没有新增浏览的条目会被移除；取值和移除都在 computeIfPresent 内完成，
+     * 与 {@link #add(Long, long)} 互斥，移除的 LongAdder 上不会再有累加
+     */
+    private Map<Long, Long> drain() {
+        Map<Long, Long> deltas = new HashMap<>();
+        for (Long postId : pending.keySet()) {
+            pending.computeIfPresent(postId, (id, adder) -> {
+                long delta = adder.sumThenReset();
+                if (delta == 0) {
+                    return null;
+                }
+                inFlight.put(id, delta);
+                deltas.put(id, delta);
+                return adder;
+            });
+        }
+        return deltas;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("应用关闭 - 刷新未写入的浏览量");
+        flush();
+    }
+
+    public int getPendingPostCount() {
+        return pending.size();
+    }
+
+    public long getPendingViewTotal() {
+        return pending.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+}
@@ -1,25 +1,67 @@
 package com.sg.nusiss.forum.service.forum;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 浏览记录追踪器
  * 用于防止短时间内重复计数浏览量
+ *
+ * 记录按时间分代保存：时间窗口被切成 segments 段，每段一代，共保留 segments + 1 代，
+ * 新一代开始时直接清空最老的一代（无需全表扫描）。每代是以 long 为键的开放寻址哈希集合，
+ * 键由 userId/postId 打包而成，不产生字符串和装箱对象。总条目数受 max-entries 限制，
+ * 当前代写满时提前淘汰最老的一代。
  */
 @Service
 public class ViewTracker {
-    
-    // 存储格式: "userId_postId" -> lastViewTime
-    // 如果userId为null，使用sessionId
-    private final Map<String, Long> viewRecords = new ConcurrentHashMap<>();
-    
-    // 时间窗口：5分钟内不重复计数
-    private static final long VIEW_WINDOW_MS = TimeUnit.MINUTES.toMillis(5);
-    
+
+    // 分段锁数量，降低并发访问时的锁竞争
+    private static final int STRIPES = 16;
+
+    private final long segmentMillis;
+    private final int generations;
+    private final int generationCapacity;
+    private final Stripe[] stripes;
+
+    private final LongAdder hits = new LongAdder();       // 窗口内重复浏览（不计数）
+    private final LongAdder misses = new LongAdder();     // 新浏览（计数）
+    private final LongAdder evictions = new LongAdder();  // 因容量限制提前淘汰的记录
+
+    public ViewTracker(@Value("${forum.view-tracker.window-ms:300000}") long windowMillis,
+                       @Value("${forum.view-tracker.segments:5}") int segments,
+                       @Value("${forum.view-tracker.max-entries:1000000}") int maxEntries,
+                       MeterRegistry meterRegistry) {
+        if (windowMillis <= 0 || segments <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("浏览追踪器配置必须为正数");
+        }
+        this.segmentMillis = Math.max(1, windowMillis / segments);
+        this.generations = segments + 1;
+        this.generationCapacity = Math.max(16, maxEntries / (STRIPES * generations));
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+
+        Gauge.builder("forum.view_tracker.entries", this, ViewTracker::getRecordCount)
+                .description("浏览追踪器当前记录数")
+                .register(meterRegistry);
+        FunctionCounter.builder("forum.view_tracker.hits", hits, LongAdder::sum)
+                .description("窗口内重复浏览次数")
+                .register(meterRegistry);
+        FunctionCounter.builder("forum.view_tracker.misses", misses, LongAdder::sum)
+                .description("计入浏览量的浏览次数")
+                .register(meterRegistry);
+        FunctionCounter.builder("forum.view_tracker.evictions", evictions, LongAdder::sum)
+                .description("因容量限制提前淘汰的记录数")
+                .register(meterRegistry);
+    }
+
     /**
      * 检查是否应该增加浏览量
      * @param userId 用户ID（可能为null，未登录用户）
@@ -28,43 +70,250 @@ public class ViewTracker {
      * @return true如果应该增加浏览量，false如果在时间窗口内已浏览过
      */
     public boolean shouldIncrementView(Long userId, String sessionId, Long postId) {
-        String key = buildKey(userId, sessionId, postId);
-        long currentTime = System.currentTimeMillis();
-        
-        Long lastViewTime = viewRecords.get(key);
-        
-        // 如果从未浏览过，或者超过时间窗口
-        if (lastViewTime == null || (currentTime - lastViewTime) > VIEW_WINDOW_MS) {
-            viewRecords.put(key, currentTime);
-            return true;
+        long key = buildKey(userId, sessionId, postId);
+        long epoch = System.currentTimeMillis() / segmentMillis;
+
+        boolean counted = stripeFor(key).checkAndAdd(key, epoch);
+        if (counted) {
+            misses.increment();
+        } else {
+            hits.increment();
         }
-        
-        // 在时间窗口内，不增加浏览量
-        return false;
+        return counted;
     }
-    
+
     /**
-     * 构建缓存key
+     * 构建记录键
+     * 用户ID和帖子ID都较小时直接拼接（高位为0，不会冲突）；
+     * 否则（包括未登录用户）使用 64 位哈希并置最高位，与拼接键区分开
      */
-    private String buildKey(Long userId, String sessionId, Long postId) {
-        String userIdentifier = userId != null ? "user_" + userId : "session_" + sessionId;
-        return userIdentifier + "_post_" + postId;
+    private long buildKey(Long userId, String sessionId, Long postId) {
+        long post = postId != null ? postId : 0L;
+        if (userId != null) {
+            if ((userId >>> 31) == 0 && (post >>> 32) == 0) {
+                return (userId << 32) | post;
+            }
+            return mix64(mix64(userId) ^ post) | Long.MIN_VALUE;
+        }
+        return mix64(hashSessionId(sessionId) ^ post) | Long.MIN_VALUE;
     }
-    
+
     /**
-     * 清理过期记录（可选，由定时任务调用）
+     * 清理过期记录（由定时任务调用）
+     * 过期代在访问时已被跳过，这里只负责释放其占用的内存
      */
     public void cleanExpiredRecords() {
-        long currentTime = System.currentTimeMillis();
-        viewRecords.entrySet().removeIf(entry -> 
-            (currentTime - entry.getValue()) > VIEW_WINDOW_MS
-        );
+        long epoch = System.currentTimeMillis() / segmentMillis;
+        for (Stripe stripe : stripes) {
+            stripe.releaseExpired(epoch);
+        }
     }
-    
+
     /**
      * 获取当前记录数（用于监控）
      */
     public int getRecordCount() {
-        return viewRecords.size();
+        long epoch = System.currentTimeMillis() / segmentMillis;
+        int total = 0;
+        for (Stripe stripe : stripes) {
+            total += stripe.liveSize(epoch);
+        }
+        return total;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private Stripe stripeFor(long key) {
+        return stripes[(int) (mix64(key) >>> 60) & (STRIPES - 1)];
+    }
+
+    /**
+     * 会话ID的 64 位 FNV-1a 哈希（不分配新对象）
+     */
+    private static long hashSessionId(String sessionId) {
+        long hash = 0xcbf29ce484222325L;
+        if (sessionId != null) {
+            for (int i = 0; i < sessionId.length(); i++) {
+                hash ^= sessionId.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * MurmurHash3 fmix64
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * 一个分段：保存 generations 代记录的环形数组
+     */
+    private final class Stripe {
+        private final LongHashSet[] sets = new LongHashSet[generations];
+        private final long[] epochs = new long[generations];
+
+        Stripe() {
+            Arrays.fill(epochs, Long.MIN_VALUE);
+            for (int i = 0; i < generations; i++) {
+                sets[i] = new LongHashSet();
+            }
+        }
+
+        synchronized boolean checkAndAdd(long key, long epoch) {
+            for (int i = 0; i < generations; i++) {
+                if (isLive(i, epoch) && sets[i].contains(key)) {
+                    return false;
+                }
+            }
+
+            int current = (int) Math.floorMod(epoch, (long) generations);
+            if (epochs[current] != epoch) {
+                // 新一代开始，复用最老一代的位置
+                sets[current].clear();
+                epochs[current] = epoch;
+            }
+            if (sets[current].size() >= generationCapacity) {
+                evictOldest(current, epoch);
+            }
+            sets[current].add(key);
+            return true;
+        }
+
+        synchronized int liveSize(long epoch) {
+            int total = 0;
+            for (int i = 0; i < generations; i++) {
+                if (isLive(i, epoch)) {
+                    total += sets[i].size();
+                }
+            }
+            return total;
+        }
+
+        synchronized void releaseExpired(long epoch) {
+            for (int i = 0; i < generations; i++) {
+                if (!isLive(i, epoch) && epochs[i] != Long.MIN_VALUE) {
+                    sets[i].clear();
+                    epochs[i] = Long.MIN_VALUE;
+                }
+            }
+        }
+
+        /**
+         * 当前代已满：淘汰除当前代外最老的一代，没有则清空当前代
+         */
+        private void evictOldest(int current, long epoch) {
+            int oldest = current;
+            for (int i = 0; i < generations; i++) {
+                if (i != current && isLive(i, epoch)
+                        && (oldest == current || epochs[i] < epochs[oldest])) {
+                    oldest = i;
+                }
+            }
+            evictions.add(sets[oldest].size());
+            sets[oldest].clear();
+            if (oldest != current) {
+                epochs[oldest] = Long.MIN_VALUE;
+            }
+        }
+
+        private boolean isLive(int index, long epoch) {
+            return epochs[index] != Long.MIN_VALUE && epoch - epochs[index] < generations;
+        }
+    }
+
+    /**
+     * 以 long 为元素的开放寻址哈希集合（线性探测，0 作为空槽标记单独处理）
+     */
+    private static final class LongHashSet {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private long[] table = new long[INITIAL_CAPACITY];
+        private int size;
+        private boolean containsZero;
+
+        int size() {
+            return size;
+        }
+
+        boolean contains(long key) {
+            if (key == 0) {
+                return containsZero;
+            }
+            int mask = table.length - 1;
+            int i = (int) mix64(key) & mask;
+            long existing;
+            while ((existing = table[i]) != 0) {
+                if (existing == key) {
+                    return true;
+                }
+                i = (i + 1) & mask;
+            }
+            return false;
+        }
+
+        void add(long key) {
+            if (key == 0) {
+                if (!containsZero) {
+                    containsZero = true;
+                    size++;
+                }
+                return;
+            }
+            if ((size + 1) * 4L > table.length * 3L) {
+                resize();
+            }
+            if (insert(table, key)) {
+                size++;
+            }
+        }
+
+        void clear() {
+            if (table.length > INITIAL_CAPACITY) {
+                table = new long[INITIAL_CAPACITY];
+            } else {
+                Arrays.fill(table, 0L);
+            }
+            size = 0;
+            containsZero = false;
+        }
+
+        private void resize() {
+            long[] newTable = new long[table.length * 2];
+            for (long key : table) {
+                if (key != 0) {
+                    insert(newTable, key);
+                }
+            }
+            table = newTable;
+        }
+
+        private static boolean insert(long[] target, long key) {
+            int mask = target.length - 1;
+            int i = (int) mix64(key) & mask;
+            long existing;
+            while ((existing = target[i]) != 0) {
+                if (existing == key) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            target[i] = key;
+            return true;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,193 @@
+package com.sg.nusiss.forum.service.user;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sg.nusiss.common.dto.UserDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 论坛作者信息两级缓存
+ * L1: 进程内 Caffeine 缓存（W-TinyLFU，按条数和 TTL 限制）
+ * L2: 可选的 Redis 缓存（forum.user-cache.redis.enabled=true 时启用，多节点共享）
+ *
+ * 值为 Optional：Optional.empty() 表示 Auth 服务确认用户不存在（负缓存，TTL 较短）；
+ * 查询方法返回 null 表示未命中。
+ *
+ * Auth 服务不发布资料变更事件，缓存只靠 TTL 过期：用户名/头像修改后最迟
+ * forum.user-cache.ttl-seconds 后可见；启用 Redis 时 L1 可能在 L2 即将过期时载入，
+ * 最坏情况为两倍 TTL。
+ */
+@Slf4j
+@Component
+public class ForumUserCache {
+
+    private static final String REDIS_KEY_PREFIX = "forum:user:";
+    // Redis 中的负缓存标记
+    private static final String MISSING_MARKER = "";
+
+    private final Cache<Long, Optional<UserDTO>> localCache;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration negativeTtl;
+
+    public ForumUserCache(@Value("${forum.user-cache.max-size:10000}") long maxSize,
+                          @Value("${forum.user-cache.ttl-seconds:600}") long ttlSeconds,
+                          @Value("${forum.user-cache.negative-ttl-seconds:60}") long negativeTtlSeconds,
+                          @Value("${forum.user-cache.redis.enabled:false}") boolean redisEnabled,
+                          ObjectProvider<StringRedisTemplate> redisTemplateProvider,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry) {
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.negativeTtl = Duration.ofSeconds(negativeTtlSeconds);
+        this.objectMapper = objectMapper;
+        this.redisTemplate = redisEnabled ? redisTemplateProvider.getIfAvailable() : null;
+
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<Long, Optional<UserDTO>>() {
+                    @Override
+                    public long expireAfterCreate(Long key, Optional<UserDTO> value, long currentTime) {
+                        return (value.isPresent() ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long key, Optional<UserDTO> value,
+                                                  long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long key, Optional<UserDTO> value,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "forum.user");
+        log.info("作者信息缓存初始化 - 最大条数: {}, TTL: {}s, Redis: {}",
+                maxSize, ttlSeconds, this.redisTemplate != null ? "启用" : "未启用");
+    }
+
+    /**
+     * 查询单个用户
+     * @return 命中返回 Optional（empty 表示用户不存在），未命中返回 null
+     */
+    public Optional<UserDTO> get(Long userId) {
+        Optional<UserDTO> local = localCache.getIfPresent(userId);
+        if (local != null) {
+            return local;
+        }
+        if (redisTemplate == null) {
+            return null;
+        }
+
+        try {
+            Optional<UserDTO> remote = decode(redisTemplate.opsForValue().get(REDIS_KEY_PREFIX + userId));
+            if (remote != null) {
+                localCache.put(userId, remote);
+            }
+            return remote;
+        } catch (Exception e) {
+            log.warn("读取 Redis 用户缓存失败 - userId: {}, 错误: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 批量查询，只返回命中的条目
+     */
+    public Map<Long, Optional<UserDTO>> getAll(Collection<Long> userIds) {
+        Map<Long, Optional<UserDTO>> hits = new HashMap<>(localCache.getAllPresent(userIds));
+        if (redisTemplate == null || hits.size() == userIds.size()) {
+            return hits;
+        }
+
+        List<Long> misses = new ArrayList<>();
+        for (Long userId : userIds) {
+            if (!hits.containsKey(userId)) {
+                misses.add(userId);
+            }
+        }
+
+        try {
+            List<String> keys = misses.stream().map(id -> REDIS_KEY_PREFIX + id).toList();
+            List<String> values = redisTemplate.opsForValue().multiGet(keys);
+            if (values != null) {
+                for (int i = 0; i < misses.size(); i++) {
+                    Optional<UserDTO> remote = decode(values.get(i));
+                    if (remote != null) {
+                        localCache.put(misses.get(i), remote);
+                        hits.put(misses.get(i), remote);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("批量读取 Redis 用户缓存失败 - userIds: {}, 错误: {}", misses, e.getMessage());
+        }
+        return hits;
+    }
+
+    /**
+     * 缓存用户信息
+     */
+    public void put(UserDTO user) {
+        if (user == null || user.getUserId() == null) {
+            return;
+        }
+        Optional<UserDTO> value = Optional.of(user);
+        localCache.put(user.getUserId(), value);
+        writeRemote(user.getUserId(), value);
+    }
+
+    /**
+     * 记录用户不存在（负缓存）
+     */
+    public void putMissing(Long userId) {
+        localCache.put(userId, Optional.empty());
+        writeRemote(userId, Optional.empty());
+    }
+
+    private void writeRemote(Long userId, Optional<UserDTO> value) {
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            String payload = value.isPresent() ? objectMapper.writeValueAsString(value.get()) : MISSING_MARKER;
+            Duration expire = value.isPresent() ? ttl : negativeTtl;
+            redisTemplate.opsForValue().set(REDIS_KEY_PREFIX + userId, payload,
+                    expire.toSeconds(), TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("写入 Redis 用户缓存失败 - userId: {}, 错误: {}", userId, e.getMessage());
+        }
+    }
+
+    private Optional<UserDTO> decode(String payload) throws Exception {
+        if (payload == null) {
+            return null;
+        }
+        if (MISSING_MARKER.equals(payload)) {
+            return Optional.empty();
+        }
+        return Optional.of(objectMapper.readValue(payload, UserDTO.class));
+    }
+}
@@ -12,7 +12,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * UserService - 适配直接返回 UserDTO 的版本
@@ -25,6 +30,7 @@ import java.util.List;
 public class UserService {
 
     private final RestTemplate restTemplate;
+    private final ForumUserCache userCache;
 
     @Value("${auth.service.url:http://gamevault-auth}")
     private String authServiceUrl;
@@ -32,7 +38,8 @@ public class UserService {
     /**
      * 根据用户ID查询用户信息
      *
-     * 🔥 修改点: 直接接收 UserDTO,而不是 BaseResponse<UserDTO>
+     * 先查作者缓存（本地 + 可选 Redis），未命中才调用 Auth 服务。
+     * Auth 服务返回 404 时记录负缓存；网络错误等临时失败不缓存。
      */
     public UserDTO getUserById(Long userId) {
         if (userId == null) {
@@ -40,11 +47,15 @@ public class UserService {
             return null;
         }
 
-        log.info("🔍 开始查询用户信息 - userId: {}", userId);
+        Optional<UserDTO> cached = userCache.get(userId);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+
+        log.debug("🔍 作者缓存未命中,查询 Auth 服务 - userId: {}", userId);
 
         try {
             String url = authServiceUrl + "/api/users/" + userId;
-            log.info("🌐 调用 Auth 服务 - URL: {}", url);
 
             // 🔥 直接接收 UserDTO,不是 BaseResponse
             ResponseEntity<UserDTO> response = restTemplate.exchange(
@@ -56,7 +67,8 @@ public class UserService {
 
             if (response.getBody() != null) {
                 UserDTO user = response.getBody();
-                log.info("✅ 成功获取用户信息 - userId: {}, username: {}",
+                userCache.put(user);
+                log.debug("✅ 成功获取用户信息 - userId: {}, username: {}",
                         userId, user.getUsername());
                 return user;
             } else {
@@ -70,6 +82,7 @@ public class UserService {
 
         } catch (org.springframework.web.client.HttpClientErrorException.NotFound e) {
             log.warn("⚠️ 用户不存在 - userId: {}", userId);
+            userCache.putMissing(userId);
 
         } catch (org.springframework.web.client.HttpClientErrorException e) {
             log.error("❌ HTTP客户端错误 - userId: {}, 状态码: {}, 响应: {}",
@@ -82,22 +95,56 @@ public class UserService {
         }
 
         // 返回 null,让调用方处理
-        log.warn("⚠️ 获取用户信息失败,返回 null - userId: {}", userId);
         return null;
     }
 
     /**
      * 批量查询用户信息
      *
-     * 🔥 修改点: 直接接收 List<UserDTO>
+     * 只向 Auth 服务请求缓存未命中的用户，返回结果按入参顺序排列（去重，跳过不存在的用户）。
+     * 批量接口成功返回但缺少的用户记录为负缓存。
      */
     public List<UserDTO> getUsersByIds(List<Long> userIds) {
         if (userIds == null || userIds.isEmpty()) {
             return new ArrayList<>();
         }
 
-        log.info("🔍 批量查询用户信息 - userIds: {}", userIds);
+        Set<Long> distinctIds = new LinkedHashSet<>();
+        for (Long userId : userIds) {
+            if (userId != null) {
+                distinctIds.add(userId);
+            }
+        }
+
+        Map<Long, Optional<UserDTO>> resolved = new HashMap<>(userCache.getAll(distinctIds));
+        List<Long> misses = new ArrayList<>();
+        for (Long userId : distinctIds) {
+            if (!resolved.containsKey(userId)) {
+                misses.add(userId);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            log.debug("🔍 批量查询用户信息 - 缓存命中: {}, 未命中: {}",
+                    distinctIds.size() - misses.size(), misses);
+            resolved.putAll(fetchUsers(misses));
+        }
+
+        List<UserDTO> users = new ArrayList<>(distinctIds.size());
+        for (Long userId : distinctIds) {
+            Optional<UserDTO> user = resolved.get(userId);
+            if (user != null && user.isPresent()) {
+                users.add(user.get());
+            }
+        }
+        return users;
+    }
 
+    /**
+     * 调用 Auth 批量接口并写入缓存，请求失败时返回空 Map（不缓存）
+     */
+    private Map<Long, Optional<UserDTO>> fetchUsers(List<Long> userIds) {
+        Map<Long, Optional<UserDTO>> fetched = new HashMap<>();
         try {
             String url = authServiceUrl + "/api/users/batch";
 
@@ -108,17 +155,28 @@ public class UserService {
                     new ParameterizedTypeReference<List<UserDTO>>() {}
             );
 
-            if (response.getBody() != null) {
-                List<UserDTO> users = response.getBody();
-                log.info("✅ 成功批量获取 {} 个用户信息", users.size());
-                return users;
+            if (response.getBody() == null) {
+                return fetched;
+            }
+
+            for (UserDTO user : response.getBody()) {
+                if (user != null && user.getUserId() != null) {
+                    userCache.put(user);
+                    fetched.put(user.getUserId(), Optional.of(user));
+                }
             }
+            for (Long userId : userIds) {
+                if (!fetched.containsKey(userId)) {
+                    userCache.putMissing(userId);
+                    fetched.put(userId, Optional.empty());
+                }
+            }
+            log.debug("✅ 成功批量获取 {} 个用户信息", response.getBody().size());
 
         } catch (Exception e) {
             log.error("❌ 批量查询用户失败: userIds={}", userIds, e);
         }
-
-        return new ArrayList<>();
+        return fetched;
     }
 
     /**
@@ -127,7 +185,7 @@ public class UserService {
      * 🔥 修改点: 直接接收 List<UserDTO>
      */
     public List<UserDTO> searchUsers(String keyword) {
-        log.info("🔍 搜索用户 - keyword: {}", keyword);
+        log.debug("🔍 搜索用户 - keyword: {}", keyword);
 
         try {
             String url = authServiceUrl + "/api/users/search?keyword=" + keyword;
@@ -141,7 +199,7 @@ public class UserService {
 
             if (response.getBody() != null) {
                 List<UserDTO> users = response.getBody();
-                log.info("✅ 搜索到 {} 个用户", users.size());
+                log.debug("✅ 搜索到 {} 个用户", users.size());
                 return users;
             }
 
@@ -4,6 +4,10 @@ import org.hashids.Hashids;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -17,12 +21,14 @@ public class HashIdUtil {
     private final Hashids postHashids;
     private final Hashids userHashids;
     private final Hashids forumHashids;
+    private final Hashids cursorHashids;
 
     public HashIdUtil(@Value("${hashid.salt:forum-backend-2024}") String salt) {
         // 使用不同的盐值和最小长度来区分不同类型的ID
         this.postHashids = new Hashids(salt + "-post", 8);
         this.userHashids = new Hashids(salt + "-user", 6);
         this.forumHashids = new Hashids(salt + "-forum", 6);
+        this.cursorHashids = new Hashids(salt + "-cursor", 12);
     }
 
     // ==================== Post ID 编码/解码 ====================
@@ -84,6 +90,51 @@ public class HashIdUtil {
         }
     }
 
+    // ==================== 分页游标 编码/解码 ====================
+
+    /**
+     * 编码分页游标（created_date + content_id）
+     * 时间按微秒精度编码，与 PostgreSQL TIMESTAMP 精度一致，保证翻页不漏行
+     */
+    public String encodeCursor(LocalDateTime createdDate, Long contentId) {
+        if (createdDate == null || contentId == null) return null;
+        Instant instant = createdDate.toInstant(ZoneOffset.UTC);
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+        return cursorHashids.encode(micros, contentId);
+    }
+
+    /**
+     * 解码分页游标
+     * @return 游标位置，格式错误时返回 null
+     */
+    public CursorPosition decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) return null;
+        try {
+            long[] decode = cursorHashids.decode(cursor);
+            if (decode.length != 2) {
+                return null;
+            }
+            LocalDateTime createdDate = LocalDateTime.ofInstant(
+                    Instant.EPOCH.plus(decode[0], ChronoUnit.MICROS), ZoneOffset.UTC);
+            return new CursorPosition(createdDate, decode[1]);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 游标位置
+     */
+    public static class CursorPosition {
+        public final LocalDateTime createdDate;
+        public final Long contentId;
+
+        public CursorPosition(LocalDateTime createdDate, Long contentId) {
+            this.createdDate = createdDate;
+            this.contentId = contentId;
+        }
+    }
+
     // ==================== 批量编码 ====================
 
     /**
@@ -0,0 +1,57 @@
+package com.sg.nusiss.forum.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * JWT 验证缓存基准
+ * 同一 Token 重复请求时，对比每次 RS256 验签与缓存命中的单次请求耗时（只输出结果，不做断言；
+ * 缓存行为由 {@link CachingJwtDecoderTest} 校验）
+ *
+ * 默认跳过：
+ * mvn test -Dtest=CachingJwtDecoderBenchmarkTest -Dgamevault.it.benchmark=true
+ */
+@EnabledIfSystemProperty(named = "gamevault.it.benchmark", matches = "true")
+class CachingJwtDecoderBenchmarkTest {
+
+    private static final int WARMUP = 500;
+    private static final int REQUESTS = 5000;
+
+    @Test
+    void decodePerRequest() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        JwtDecoder nimbusDecoder = NimbusJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build();
+        String token = CachingJwtDecoderTest.sign(keyPair, "alice", 42L, Instant.now().plusSeconds(3600));
+
+        JwtDecoder uncached = new CachingJwtDecoder(nimbusDecoder, false, 1000, Duration.ofMinutes(10),
+                new SimpleMeterRegistry());
+        JwtDecoder cached = new CachingJwtDecoder(nimbusDecoder, true, 1000, Duration.ofMinutes(10),
+                new SimpleMeterRegistry());
+
+        double uncachedMicros = measure(uncached, token);
+        double cachedMicros = measure(cached, token);
+        System.out.printf("JWT decode per request - uncached: %.2f µs, cached: %.2f µs%n", uncachedMicros, cachedMicros);
+    }
+
+    private double measure(JwtDecoder decoder, String token) {
+        for (int i = 0; i < WARMUP; i++) {
+            decoder.decode(token);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            decoder.decode(token);
+        }
+        return (System.nanoTime() - start) / 1000.0 / REQUESTS;
+    }
+}
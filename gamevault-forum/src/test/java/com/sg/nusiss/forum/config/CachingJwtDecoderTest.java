@@ -0,0 +1,94 @@
+package com.sg.nusiss.forum.config;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * JWT 验证缓存：命中时不再验签，无效 Token 不进入缓存
+ */
+class CachingJwtDecoderTest {
+
+    private static final int REQUESTS = 10;
+
+    private static KeyPair keyPair;
+    private static JwtDecoder nimbusDecoder;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+        nimbusDecoder = NimbusJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build();
+    }
+
+    @Test
+    void cachedDecodeSkipsSignatureVerification() throws Exception {
+        String token = sign("alice", 42L, Instant.now().plusSeconds(3600));
+
+        SimpleMeterRegistry uncachedRegistry = new SimpleMeterRegistry();
+        SimpleMeterRegistry cachedRegistry = new SimpleMeterRegistry();
+        JwtDecoder uncached = new CachingJwtDecoder(nimbusDecoder, false, 1000, Duration.ofMinutes(10), uncachedRegistry);
+        JwtDecoder cached = new CachingJwtDecoder(nimbusDecoder, true, 1000, Duration.ofMinutes(10), cachedRegistry);
+
+        for (int i = 0; i < REQUESTS; i++) {
+            uncached.decode(token);
+            cached.decode(token);
+        }
+
+        Jwt jwt = cached.decode(token);
+        assertEquals("alice", jwt.getSubject());
+        assertEquals(42L, ((Number) jwt.getClaim("uid")).longValue());
+
+        // 未启用缓存时每次请求都验签；启用后只有第一次验签
+        assertEquals(REQUESTS, uncachedRegistry.get("forum.jwt.verify").timer().count());
+        assertEquals(1, cachedRegistry.get("forum.jwt.verify").timer().count());
+    }
+
+    @Test
+    void invalidTokensAreNotCached() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        JwtDecoder cached = new CachingJwtDecoder(nimbusDecoder, true, 1000, Duration.ofMinutes(10), registry);
+
+        String token = sign("alice", 42L, Instant.now().plusSeconds(3600));
+        String tampered = token.substring(0, token.length() - 4) + "AAAA";
+        assertThrows(JwtException.class, () -> cached.decode(tampered));
+        assertThrows(JwtException.class, () -> cached.decode(tampered));
+        assertEquals(2, registry.get("forum.jwt.verify").timer().count());
+    }
+
+    static String sign(KeyPair keyPair, String subject, long userId, Instant expiresAt) throws Exception {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(subject)
+                .claim("uid", userId)
+                .issueTime(new Date())
+                .expirationTime(Date.from(expiresAt))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256), claims);
+        jwt.sign(new RSASSASigner(keyPair.getPrivate()));
+        return jwt.serialize();
+    }
+
+    private String sign(String subject, long userId, Instant expiresAt) throws Exception {
+        return sign(keyPair, subject, userId, expiresAt);
+    }
+}
@@ -0,0 +1,320 @@
+package com.sg.nusiss.forum.service.forum;
+
+import com.sg.nusiss.common.dto.UserDTO;
+import com.sg.nusiss.forum.service.user.UserService;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * 论坛读路径基准
+ *
+ * 在独立的 schema（forum_bench，每次运行重建）中按 docker/postgres/init/02-forum-schema.sql 建表，
+ * 依次生成不同规模的合成数据（帖子数见 gamevault.it.bench.sizes，每帖回复数、点赞数可配置），
+ * 通过完整的 Spring 上下文调用 ForumPostService / ForumContentLikeService，
+ * 输出每个操作的 p50 / p99 延迟、吞吐量和每次调用执行的 SQL 数（平均 / 最大）。
+ *
+ * 作为性能回归门槛：
+ * - 每次调用的最大 SQL 数不能随数据规模增长（出现 N+1 查询时失败）
+ * - 设置 gamevault.it.bench.max-p99-ms 时，最大规模下各操作的 p99 不能超过该值
+ *
+ * 作者信息来自认证服务，这里用固定数据代替，不计入 SQL 数。
+ * 需要 PostgreSQL，默认跳过：
+ * mvn test -Dtest=ForumReadPathBenchmarkTest -Dgamevault.it.jdbc-url=jdbc:postgresql://localhost:12000/gamevault_forum
+ *          -Dgamevault.it.username=gamevault_user -Dgamevault.it.password=gamevault_pass -Dgamevault.it.bench.sizes=1000,10000,50000
+ */
+@EnabledIfSystemProperty(named = "gamevault.it.jdbc-url", matches = ".+")
+@SpringBootTest
+class ForumReadPathBenchmarkTest {
+
+    private static final String SCHEMA = "forum_bench";
+    private static final String[] KEYWORDS = {"rpg", "indie", "speedrun", "boss", "coop"};
+    private static final int PAGE_SIZE = 20;
+
+    private static final String URL = System.getProperty("gamevault.it.jdbc-url");
+    private static final String USERNAME = System.getProperty("gamevault.it.username", "postgres");
+    private static final String PASSWORD = System.getProperty("gamevault.it.password", "");
+
+    private final int[] sizes = Arrays.stream(System.getProperty("gamevault.it.bench.sizes", "1000,10000").split(","))
+            .map(String::trim).mapToInt(Integer::parseInt).toArray();
+    private final int repliesPerPost = Integer.getInteger("gamevault.it.bench.replies-per-post", 5);
+    private final int likesPerPost = Integer.getInteger("gamevault.it.bench.likes-per-post", 5);
+    private final int users = Integer.getInteger("gamevault.it.bench.users", 1000);
+    private final int warmup = Integer.getInteger("gamevault.it.bench.warmup", 200);
+    private final int iterations = Integer.getInteger("gamevault.it.bench.iterations", 2000);
+    private final double maxP99Millis = Double.parseDouble(System.getProperty("gamevault.it.bench.max-p99-ms", "0"));
+
+    @Autowired
+    private ForumPostService postService;
+
+    @Autowired
+    private ForumContentLikeService contentLikeService;
+
+    @Autowired
+    private ContentLikeStore contentLikeStore;
+
+    @MockitoBean
+    private UserService userService;
+
+    @DynamicPropertySource
+    static void benchmarkProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> ForumTestSchema.datasourceUrl(URL, SCHEMA));
+        registry.add("spring.datasource.username", () -> USERNAME);
+        registry.add("spring.datasource.password", () -> PASSWORD);
+        registry.add("spring.cloud.nacos.discovery.enabled", () -> "false");
+        registry.add("spring.cloud.service-registry.auto-registration.enabled", () -> "false");
+        registry.add("mybatis.configuration.log-impl", () -> "org.apache.ibatis.logging.nologging.NoLoggingImpl");
+        registry.add("forum.like.outbox.dir",
+                () -> Paths.get(System.getProperty("java.io.tmpdir"), "forum-bench-outbox-" + System.nanoTime()));
+    }
+
+    /**
+     * 重建基准 schema（在 Spring 上下文启动前执行，定时任务启动时表已存在）
+     */
+    @BeforeAll
+    static void createSchema() throws Exception {
+        ForumTestSchema.recreate(URL, USERNAME, PASSWORD, SCHEMA);
+    }
+
+    @Test
+    void readPathLatencyAndQueryCounts() throws Exception {
+        when(userService.getUserById(anyLong())).thenAnswer(invocation -> user(invocation.getArgument(0)));
+        when(userService.getUsersByIds(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(ForumReadPathBenchmarkTest::user).collect(Collectors.toList());
+        });
+
+        Map<Integer, List<Result>> resultsBySize = new LinkedHashMap<>();
+        for (int posts : sizes) {
+            seed(posts);
+            List<Long> postIds = queryIds("SELECT content_id FROM contents WHERE content_type = 'post'");
+            Random random = new Random(posts);
+            int pages = Math.max(1, Math.min(50, posts / PAGE_SIZE));
+
+            List<Result> results = new ArrayList<>();
+            results.add(measure("getPostList", posts, i ->
+                    postService.getPostList(random.nextInt(pages), PAGE_SIZE, randomUser(random))));
+            results.add(measure("searchPosts", posts, i ->
+                    postService.searchPosts(KEYWORDS[i % KEYWORDS.length], 0, PAGE_SIZE, randomUser(random))));
+            results.add(measure("getRepliesByPostId", posts, i ->
+                    postService.getRepliesByPostId(randomPost(postIds, random), 0, PAGE_SIZE, randomUser(random))));
+            results.add(measure("getPostById", posts, i ->
+                    postService.getPostById(randomPost(postIds, random), randomUser(random))));
+            results.add(measure("toggleLike", posts, i ->
+                    contentLikeService.toggleLike(randomPost(postIds, random), randomUser(random))));
+            resultsBySize.put(posts, results);
+        }
+
+        System.out.println();
+        System.out.printf("%-20s %8s %10s %10s %10s %9s %9s%n",
+                "operation", "posts", "p50(ms)", "p99(ms)", "ops/s", "sql/avg", "sql/max");
+        resultsBySize.values().forEach(results -> results.forEach(result -> System.out.println(result.format())));
+
+        List<Result> smallest = resultsBySize.get(sizes[0]);
+        List<Result> largest = resultsBySize.get(sizes[sizes.length - 1]);
+        for (int i = 0; i < largest.size(); i++) {
+            Result small = smallest.get(i);
+            Result large = largest.get(i);
+            assertTrue(large.maxQueries <= small.maxQueries,
+                    large.name + " 每次调用的 SQL 数随数据规模增长: " + small.maxQueries + " -> " + large.maxQueries);
+            if (maxP99Millis > 0) {
+                assertTrue(large.p99Millis() <= maxP99Millis,
+                        large.name + " p99 超过门槛: " + large.p99Millis() + "ms > " + maxP99Millis + "ms");
+            }
+        }
+    }
+
+    // ==================== 测量 ====================
+
+    private Result measure(String name, int posts, IntConsumer operation) {
+        for (int i = 0; i < warmup; i++) {
+            operation.accept(i);
+        }
+        long[] nanos = new long[iterations];
+        long totalQueries = 0;
+        long maxQueries = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            long queriesBefore = QueryCounter.current();
+            long start = System.nanoTime();
+            operation.accept(i);
+            nanos[i] = System.nanoTime() - start;
+            long queries = QueryCounter.current() - queriesBefore;
+            totalQueries += queries;
+            maxQueries = Math.max(maxQueries, queries);
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        Arrays.sort(nanos);
+        return new Result(name, posts, percentile(nanos, 0.50), percentile(nanos, 0.99),
+                iterations / seconds, (double) totalQueries / iterations, maxQueries);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private record Result(String name, int posts, long p50Nanos, long p99Nanos, double opsPerSecond,
+                          double avgQueries, long maxQueries) {
+
+        double p99Millis() {
+            return p99Nanos / 1e6;
+        }
+
+        String format() {
+            return String.format("%-20s %8d %10.3f %10.3f %10.0f %9.2f %9d",
+                    name, posts, p50Nanos / 1e6, p99Millis(), opsPerSecond, avgQueries, maxQueries);
+        }
+    }
+
+    /**
+     * 统计当前线程执行的 SQL 数（定时任务线程的查询不计入）
+     */
+    @Intercepts(@Signature(type = StatementHandler.class, method = "prepare",
+            args = {Connection.class, Integer.class}))
+    static class QueryCounter implements Interceptor {
+
+        private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+        static long current() {
+            return COUNT.get()[0];
+        }
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            COUNT.get()[0]++;
+            return invocation.proceed();
+        }
+    }
+
+    @TestConfiguration
+    static class QueryCounterConfig {
+        @Bean
+        QueryCounter queryCounter() {
+            return new QueryCounter();
+        }
+    }
+
+    // ==================== 数据 ====================
+
+    /**
+     * 清空并生成 posts 个帖子、每帖 repliesPerPost 条回复和 likesPerPost 个点赞，以及对应的统计数据
+     */
+    private void seed(int posts) throws Exception {
+        // 先写完未持久化的点赞，避免清空后刷新时引用已删除的内容
+        contentLikeStore.flush();
+
+        long started = System.currentTimeMillis();
+        String keywords = "(ARRAY['" + String.join("','", KEYWORDS) + "'])[1 + g % " + KEYWORDS.length + "]";
+        String[] statements = {
+                "TRUNCATE contents CASCADE",
+                "INSERT INTO contents (content_type, title, body, body_plain, author_id, status, created_date, updated_date) "
+                        + "SELECT 'post', 'Post ' || g || ' ' || " + keywords + ", "
+                        + "'Benchmark post ' || g || ' about ' || " + keywords + ", "
+                        + "'Benchmark post ' || g || ' about ' || " + keywords + ", "
+                        + "1 + g % " + users + ", 'active', "
+                        + "TIMESTAMP '2024-01-01' + g * INTERVAL '1 minute', TIMESTAMP '2024-01-01' + g * INTERVAL '1 minute' "
+                        + "FROM generate_series(1, " + posts + ") g",
+                "INSERT INTO contents (content_type, body, body_plain, author_id, parent_id, status, created_date, updated_date) "
+                        + "SELECT 'reply', 'Reply ' || r || ' to ' || p.content_id, 'Reply ' || r || ' to ' || p.content_id, "
+                        + "1 + (p.content_id * 31 + r) % " + users + ", p.content_id, 'active', "
+                        + "p.created_date + r * INTERVAL '1 second', p.created_date + r * INTERVAL '1 second' "
+                        + "FROM contents p CROSS JOIN generate_series(1, " + repliesPerPost + ") r "
+                        + "WHERE p.content_type = 'post'",
+                "INSERT INTO user_content_relations (user_id, content_id, relation_type_id, created_date) "
+                        + "SELECT 1 + (p.content_id * 7 + k * 131) % " + users + ", p.content_id, "
+                        + "(SELECT type_id FROM relationship_types WHERE type_name = 'like'), p.created_date "
+                        + "FROM contents p CROSS JOIN generate_series(1, " + likesPerPost + ") k "
+                        + "WHERE p.content_type = 'post' "
+                        + "ON CONFLICT DO NOTHING",
+                "INSERT INTO content_metrics (content_id, metric_id, metric_value) "
+                        + "SELECT c.content_id, md.metric_id, CASE md.metric_name "
+                        + "  WHEN 'view_count' THEN (c.content_id * 17 % 1000)::INTEGER "
+                        + "  WHEN 'like_count' THEN (SELECT COUNT(*) FROM user_content_relations u WHERE u.content_id = c.content_id)::INTEGER "
+                        + "  ELSE (SELECT COUNT(*) FROM contents r WHERE r.parent_id = c.content_id)::INTEGER END "
+                        + "FROM contents c "
+                        + "JOIN metric_definitions md ON md.metric_name IN ('view_count', 'like_count', 'reply_count')",
+                "INSERT INTO post_summary (content_id, content_type, author_id, parent_id, status, created_date, "
+                        + "view_count, like_count, reply_count) "
+                        + "SELECT c.content_id, c.content_type, c.author_id, c.parent_id, c.status, c.created_date, "
+                        + "COALESCE(SUM(cm.metric_value) FILTER (WHERE md.metric_name = 'view_count'), 0), "
+                        + "COALESCE(SUM(cm.metric_value) FILTER (WHERE md.metric_name = 'like_count'), 0), "
+                        + "COALESCE(SUM(cm.metric_value) FILTER (WHERE md.metric_name = 'reply_count'), 0) "
+                        + "FROM contents c "
+                        + "LEFT JOIN content_metrics cm ON cm.content_id = c.content_id "
+                        + "LEFT JOIN metric_definitions md ON md.metric_id = cm.metric_id "
+                        + "GROUP BY c.content_id",
+                "INSERT INTO content_counters (content_id, views, likes, replies) "
+                        + "SELECT content_id, view_count, like_count, reply_count FROM post_summary",
+                "ANALYZE"
+        };
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("SET search_path TO " + SCHEMA + ", public");
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+        System.out.printf("seeded posts=%d replies=%d likes=%d in %dms%n",
+                posts, posts * repliesPerPost, posts * likesPerPost, System.currentTimeMillis() - started);
+    }
+
+    private List<Long> queryIds(String sql) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("SET search_path TO " + SCHEMA + ", public");
+            try (ResultSet rs = statement.executeQuery(sql)) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private Long randomPost(List<Long> postIds, Random random) {
+        return postIds.get(random.nextInt(postIds.size()));
+    }
+
+    private Long randomUser(Random random) {
+        return 1L + random.nextInt(users);
+    }
+
+    private static UserDTO user(Long userId) {
+        return UserDTO.builder().userId(userId).username("user" + userId).build();
+    }
+
+    private static Connection connect() throws Exception {
+        return DriverManager.getConnection(URL, USERNAME, PASSWORD);
+    }
+}
@@ -0,0 +1,46 @@
+package com.sg.nusiss.forum.service.forum;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.stream.Collectors;
+
+/**
+ * 需要 PostgreSQL 的测试共用的建表工具
+ * 在独立的 schema 中按 docker/postgres/init/02-forum-schema.sql 重建论坛表（每次运行重建）
+ */
+final class ForumTestSchema {
+
+    private ForumTestSchema() {
+    }
+
+    /**
+     * 删除并重建 schema，执行建表脚本
+     * 脚本路径可用 gamevault.it.schema-file 覆盖
+     */
+    static void recreate(String url, String username, String password, String schema) throws Exception {
+        Path schemaFile = Paths.get(System.getProperty("gamevault.it.schema-file",
+                "../docker/postgres/init/02-forum-schema.sql"));
+        // 去掉 psql 元命令（\c 等），其余语句由驱动按多语句脚本执行
+        String script = Files.readAllLines(schemaFile).stream()
+                .filter(line -> !line.startsWith("\\"))
+                .collect(Collectors.joining("\n"));
+        try (Connection connection = DriverManager.getConnection(url, username, password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+            statement.execute("CREATE SCHEMA " + schema);
+            statement.execute("SET search_path TO " + schema + ", public");
+            statement.execute(script);
+        }
+    }
+
+    /**
+     * 默认使用该 schema 的连接地址（供 spring.datasource.url 使用）
+     */
+    static String datasourceUrl(String url, String schema) {
+        return url + (url.contains("?") ? "&" : "?") + "currentSchema=" + schema + ",public";
+    }
+}
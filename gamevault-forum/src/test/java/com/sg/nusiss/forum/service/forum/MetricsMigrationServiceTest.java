@@ -0,0 +1,150 @@
+package com.sg.nusiss.forum.service.forum;
+
+import com.sg.nusiss.forum.repository.ForumMetricMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * content_metrics → content_counters 回填与校验
+ *
+ * 宽表中有一行一致、一行数值不同、其余缺行，批次大小为 2（覆盖分批和最后一批不设上界的情况）：
+ * 回填前校验报告全部差异，回填后校验通过，之后的双写仍保持一致。
+ *
+ * 需要 PostgreSQL，默认跳过（在独立的 schema forum_migration_test 中建表）：
+ * mvn test -Dtest=MetricsMigrationServiceTest -Dgamevault.it.jdbc-url=jdbc:postgresql://localhost:12000/gamevault_forum
+ *          -Dgamevault.it.username=gamevault_user -Dgamevault.it.password=gamevault_pass
+ */
+@EnabledIfSystemProperty(named = "gamevault.it.jdbc-url", matches = ".+")
+@SpringBootTest
+class MetricsMigrationServiceTest {
+
+    private static final String SCHEMA = "forum_migration_test";
+    private static final int POSTS = 5;
+
+    private static final String URL = System.getProperty("gamevault.it.jdbc-url");
+    private static final String USERNAME = System.getProperty("gamevault.it.username", "postgres");
+    private static final String PASSWORD = System.getProperty("gamevault.it.password", "");
+
+    @Autowired
+    private ForumMetricMapper metricMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void migrationTestProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> ForumTestSchema.datasourceUrl(URL, SCHEMA));
+        registry.add("spring.datasource.username", () -> USERNAME);
+        registry.add("spring.datasource.password", () -> PASSWORD);
+        registry.add("spring.cloud.nacos.discovery.enabled", () -> "false");
+        registry.add("spring.cloud.service-registry.auto-registration.enabled", () -> "false");
+        registry.add("forum.metrics.migration.run-on-startup", () -> "false");
+        registry.add("forum.like.outbox.dir",
+                () -> Paths.get(System.getProperty("java.io.tmpdir"), "forum-migration-outbox-" + System.nanoTime()));
+    }
+
+    @BeforeAll
+    static void createSchema() throws Exception {
+        ForumTestSchema.recreate(URL, USERNAME, PASSWORD, SCHEMA);
+    }
+
+    @Test
+    void backfillCopiesMetricsAndVerifyDetectsEveryDifference() {
+        List<Long> postIds = seed();
+        MetricsMigrationService migration = new MetricsMigrationService(metricMapper, transactionTemplate, 2, false);
+
+        MetricsMigrationService.VerificationReport before = migration.verify();
+        assertEquals(POSTS, before.checked());
+        // 第二个帖子数值不同，后三个帖子缺行
+        assertEquals(POSTS - 1, before.mismatched());
+        assertFalse(before.isConsistent());
+        assertEquals(postIds.get(1), before.samples().get(0).getContentId());
+
+        assertEquals(POSTS, migration.backfill());
+
+        MetricsMigrationService.VerificationReport after = migration.verify();
+        assertEquals(POSTS, after.checked());
+        assertTrue(after.isConsistent(), "回填后仍有差异: " + after.samples());
+        for (Long postId : postIds) {
+            Map<String, Object> counters = jdbcTemplate.queryForMap(
+                    "SELECT views, likes, replies FROM content_counters WHERE content_id = ?", postId);
+            assertEquals(expectedViews(postId), ((Number) counters.get("views")).intValue());
+            assertEquals(expectedLikes(postId), ((Number) counters.get("likes")).intValue());
+            assertEquals(expectedReplies(postId), ((Number) counters.get("replies")).intValue());
+        }
+
+        // 回填后的双写保持两张表一致，重复回填也不改变结果
+        metricMapper.incrementMetric(postIds.get(2), "view_count", 3);
+        metricMapper.batchIncrementMetric("reply_count", Map.of(postIds.get(3), 2L, postIds.get(4), -1L));
+        assertTrue(migration.verify().isConsistent());
+        assertEquals(POSTS, migration.backfill());
+        assertTrue(migration.verify().isConsistent());
+    }
+
+    // ==================== 数据 ====================
+
+    /**
+     * 生成 POSTS 个帖子及三项统计；宽表中第一个帖子一致、第二个数值不同、其余缺行
+     */
+    private List<Long> seed() {
+        jdbcTemplate.execute("TRUNCATE contents CASCADE");
+        List<Long> postIds = new ArrayList<>();
+        for (int i = 0; i < POSTS; i++) {
+            postIds.add(jdbcTemplate.queryForObject(
+                    "INSERT INTO contents (content_type, title, body, body_plain, author_id) "
+                            + "VALUES ('post', 'Post', 'Post', 'Post', 1) RETURNING content_id",
+                    Long.class));
+        }
+        for (Long postId : postIds) {
+            insertMetric(postId, "view_count", expectedViews(postId));
+            insertMetric(postId, "like_count", expectedLikes(postId));
+            insertMetric(postId, "reply_count", expectedReplies(postId));
+        }
+        jdbcTemplate.update("INSERT INTO content_counters (content_id, views, likes, replies) VALUES (?, ?, ?, ?)",
+                postIds.get(0), expectedViews(postIds.get(0)), expectedLikes(postIds.get(0)),
+                expectedReplies(postIds.get(0)));
+        jdbcTemplate.update("INSERT INTO content_counters (content_id, views, likes, replies) VALUES (?, ?, ?, ?)",
+                postIds.get(1), 0, expectedLikes(postIds.get(1)), expectedReplies(postIds.get(1)));
+        return postIds;
+    }
+
+    /**
+     * 直接写 content_metrics（模拟双写上线前的历史数据，不经过双写语句）
+     */
+    private void insertMetric(Long contentId, String metricName, int value) {
+        jdbcTemplate.update("INSERT INTO content_metrics (content_id, metric_id, metric_value) "
+                        + "SELECT ?, metric_id, ? FROM metric_definitions WHERE metric_name = ?",
+                contentId, value, metricName);
+    }
+
+    private static int expectedViews(Long postId) {
+        return (int) (postId * 10 + 1);
+    }
+
+    private static int expectedLikes(Long postId) {
+        return (int) (postId % 7);
+    }
+
+    private static int expectedReplies(Long postId) {
+        return (int) (postId % 3 + 1);
+    }
+}
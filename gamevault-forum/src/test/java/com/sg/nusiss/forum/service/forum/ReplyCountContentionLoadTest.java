@@ -0,0 +1,210 @@
+package com.sg.nusiss.forum.service.forum;
+
+import com.sg.nusiss.forum.repository.ForumMetricMapper;
+import com.sg.nusiss.forum.repository.ForumPostSummaryMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 单个热门帖子的回复数写入压测
+ *
+ * 多个线程同时通过 {@link ReplyCountCounter#increment(Long, int)}（真实的 ForumMetricMapper /
+ * ForumPostSummaryMapper）给同一帖子的回复数加一，每个事务在计数更新后再停留几毫秒后提交
+ * （模拟 createReply 中计数更新之后的其余写入和提交耗时，期间行锁一直持有），
+ * 输出不分片（slots=1，所有事务争用同一行）和分片时的每秒回复数（只报告，不做断言，结果受机器负载影响）。
+ * 每轮结束后校验：合并前 content_metrics + 槽位之和、{@link ReplyCountCounter#compact()} 之后的
+ * content_metrics / post_summary / content_counters 都与提交的回复数完全一致。
+ *
+ * 需要 PostgreSQL，默认跳过（在独立的 schema forum_loadtest 中建表）：
+ * mvn test -Dtest=ReplyCountContentionLoadTest -Dgamevault.it.jdbc-url=jdbc:postgresql://localhost:12000/gamevault_forum
+ *          -Dgamevault.it.username=gamevault_user -Dgamevault.it.password=gamevault_pass
+ */
+@EnabledIfSystemProperty(named = "gamevault.it.jdbc-url", matches = ".+")
+@SpringBootTest
+class ReplyCountContentionLoadTest {
+
+    private static final String SCHEMA = "forum_loadtest";
+    private static final int THREADS = 32;
+    private static final long DURATION_MS = 5000;
+    private static final long HOLD_MS = 2;
+
+    private static final String URL = System.getProperty("gamevault.it.jdbc-url");
+    private static final String USERNAME = System.getProperty("gamevault.it.username", "postgres");
+    private static final String PASSWORD = System.getProperty("gamevault.it.password", "");
+
+    @Autowired
+    private ForumMetricMapper metricMapper;
+
+    @Autowired
+    private ForumPostSummaryMapper summaryMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void loadTestProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> ForumTestSchema.datasourceUrl(URL, SCHEMA));
+        registry.add("spring.datasource.username", () -> USERNAME);
+        registry.add("spring.datasource.password", () -> PASSWORD);
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> THREADS + 4);
+        registry.add("spring.cloud.nacos.discovery.enabled", () -> "false");
+        registry.add("spring.cloud.service-registry.auto-registration.enabled", () -> "false");
+        registry.add("mybatis.configuration.log-impl", () -> "org.apache.ibatis.logging.nologging.NoLoggingImpl");
+        // 压测期间不让定时合并任务插进来，合并由测试显式调用
+        registry.add("forum.reply-count.compact-interval-ms", () -> "3600000");
+        registry.add("forum.like.outbox.dir",
+                () -> Paths.get(System.getProperty("java.io.tmpdir"), "forum-loadtest-outbox-" + System.nanoTime()));
+    }
+
+    @BeforeAll
+    static void createSchema() throws Exception {
+        ForumTestSchema.recreate(URL, USERNAME, PASSWORD, SCHEMA);
+    }
+
+    @Test
+    void shardedSlotsKeepHotPostReplyCountExact() throws Exception {
+        long postId = seedPost();
+        double single = run(counter(1), postId);
+        double sharded = run(counter(16), postId);
+        System.out.printf("hot post reply throughput - slots=1: %.0f/s, slots=16: %.0f/s (%.1fx)%n",
+                single, sharded, sharded / single);
+    }
+
+    /**
+     * @return 每秒完成的回复数
+     */
+    private double run(ReplyCountCounter counter, long postId) throws Exception {
+        int metricBefore = committedMetric(postId);
+        int summaryBefore = summaryReplyCount(postId);
+        int countersBefore = counterReplies(postId);
+
+        LongAdder committed = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    ready.countDown();
+                    start.await();
+                    while (running.get()) {
+                        transactionTemplate.executeWithoutResult(status -> {
+                            counter.increment(postId, 1);
+                            hold();
+                        });
+                        committed.increment();
+                    }
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(DURATION_MS);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        assertTrue(errors.isEmpty(), "压测线程异常: " + errors);
+        int replies = Math.toIntExact(committed.sum());
+
+        // 合并前读取路径（content_metrics + 槽位之和）已经精确
+        assertEquals(metricBefore + replies, metricMapper.getMetricValue(postId, ReplyCountCounter.METRIC_NAME),
+                "合并前 content_metrics 加槽位之和应等于提交的回复数");
+
+        counter.compact();
+        assertEquals(0, slotRows(postId), "合并后不应残留槽位");
+        assertEquals(metricBefore + replies, committedMetric(postId), "合并后 content_metrics 应精确");
+        assertEquals(summaryBefore + replies, summaryReplyCount(postId), "合并后 post_summary 应精确");
+        assertEquals(countersBefore + replies, counterReplies(postId), "合并后 content_counters 应精确");
+        return replies / seconds;
+    }
+
+    private ReplyCountCounter counter(int slots) {
+        return new ReplyCountCounter(metricMapper, summaryMapper, transactionTemplate, slots, new SimpleMeterRegistry());
+    }
+
+    private static void hold() {
+        try {
+            Thread.sleep(HOLD_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ==================== 数据 ====================
+
+    /**
+     * 新建一个帖子及其摘要行和回复数统计行
+     */
+    private long seedPost() {
+        jdbcTemplate.execute("TRUNCATE contents CASCADE");
+        Long postId = jdbcTemplate.queryForObject(
+                "INSERT INTO contents (content_type, title, body, body_plain, author_id) "
+                        + "VALUES ('post', 'Hot post', 'Hot post', 'Hot post', 1) RETURNING content_id",
+                Long.class);
+        summaryMapper.insertFromContent(postId);
+        metricMapper.setMetricValue(postId, ReplyCountCounter.METRIC_NAME, 0);
+        return postId;
+    }
+
+    /**
+     * content_metrics 中已合并的值（不含槽位）
+     */
+    private int committedMetric(long postId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT cm.metric_value FROM content_metrics cm "
+                        + "JOIN metric_definitions md ON md.metric_id = cm.metric_id "
+                        + "WHERE cm.content_id = ? AND md.metric_name = ?",
+                Integer.class, postId, ReplyCountCounter.METRIC_NAME);
+    }
+
+    private int summaryReplyCount(long postId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT reply_count FROM post_summary WHERE content_id = ?", Integer.class, postId);
+    }
+
+    private int counterReplies(long postId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT replies FROM content_counters WHERE content_id = ?", Integer.class, postId);
+    }
+
+    private int slotRows(long postId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM content_metric_slots WHERE content_id = ?", Integer.class, postId);
+    }
+}
@@ -0,0 +1,156 @@
+package com.sg.nusiss.forum.service.forum;
+
+import com.sg.nusiss.common.dto.UserDTO;
+import com.sg.nusiss.forum.dto.ReplyResponseDTO;
+import com.sg.nusiss.forum.entity.ForumContent;
+import com.sg.nusiss.forum.repository.ForumContentMapper;
+import com.sg.nusiss.forum.repository.ForumMetricMapper;
+import com.sg.nusiss.forum.service.user.UserService;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.Invocation;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+/**
+ * 回复树加载往返次数基准
+ * 模拟 Mapper / Auth 服务 / 点赞服务，统计加载一页回复树时的外部调用次数，
+ * 验证往返次数不随每页数量增长（旧实现每条回复至少 2 次调用）
+ */
+class ReplyThreadLoaderRoundTripTest {
+
+    private static final long POST_ID = 1L;
+
+    @Test
+    void roundTripsPerPageDoNotGrowWithPageSize() {
+        List<Integer> roundTrips = new ArrayList<>();
+
+        for (int pageSize : new int[]{10, 50, 100}) {
+            ForumContentMapper contentMapper = mock(ForumContentMapper.class);
+            ForumMetricMapper metricMapper = mock(ForumMetricMapper.class);
+            UserService userService = mock(UserService.class);
+            ForumContentLikeService likeService = mock(ForumContentLikeService.class);
+
+            List<ForumContent> thread = buildThread(pageSize);
+            when(contentMapper.findReplyThread(eq(POST_ID), anyInt(), eq(pageSize))).thenReturn(thread);
+            when(metricMapper.getBatchMetrics(anyList(), eq("like_count"))).thenReturn(Map.of());
+            when(userService.getUsersByIds(anyList())).thenReturn(buildUsers(thread));
+            when(likeService.batchCheckLikeStatus(anyLong(), anyList())).thenReturn(new HashMap<>());
+
+            ReplyThreadLoader loader = new ReplyThreadLoader(contentMapper, metricMapper, userService, likeService,
+                    mock(ForumCountService.class));
+            List<ReplyResponseDTO> roots = loader.loadThread(POST_ID, 0, pageSize, 42L);
+
+            assertEquals(pageSize, roots.size());
+            for (ReplyResponseDTO root : roots) {
+                assertNotNull(root.getChildren());
+                assertEquals(2, root.getChildren().size());
+                assertNotNull(root.getChildren().get(0).getChildren());
+                assertNotNull(root.getChildren().get(0).getChildren().get(0).getReplyToName());
+            }
+
+            int calls = countCalls(contentMapper) + countCalls(metricMapper)
+                    + countCalls(userService) + countCalls(likeService);
+            roundTrips.add(calls);
+        }
+
+        assertTrue(roundTrips.get(0) <= 4, "每页往返次数应为常数: " + roundTrips);
+        assertEquals(1, roundTrips.stream().distinct().count(), "往返次数随每页数量变化: " + roundTrips);
+    }
+
+    /**
+     * 目标已删除的楼中楼由查询作为根回复返回，组装树时应保留为根，其下的回复仍挂在它下面
+     */
+    @Test
+    void orphanedRepliesStayAsRootsWithTheirChildren() {
+        ForumContentMapper contentMapper = mock(ForumContentMapper.class);
+        ForumMetricMapper metricMapper = mock(ForumMetricMapper.class);
+        UserService userService = mock(UserService.class);
+        ForumContentLikeService likeService = mock(ForumContentLikeService.class);
+
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        // 200 回复的目标 150 已删除，不在结果中
+        List<ForumContent> thread = List.of(
+                reply(100, null, 100, base),
+                reply(200, 150L, 200, base.plusMinutes(1)),
+                reply(201, 200L, 201, base.plusMinutes(2)));
+        when(contentMapper.findReplyThread(eq(POST_ID), anyInt(), eq(20))).thenReturn(thread);
+        when(contentMapper.findActiveByIds(anyList())).thenReturn(List.of());
+        when(metricMapper.getBatchMetrics(anyList(), eq("like_count"))).thenReturn(Map.of());
+        when(userService.getUsersByIds(anyList())).thenReturn(buildUsers(thread));
+
+        ReplyThreadLoader loader = new ReplyThreadLoader(contentMapper, metricMapper, userService, likeService,
+                mock(ForumCountService.class));
+        List<ReplyResponseDTO> roots = loader.loadThread(POST_ID, 0, 20, null);
+
+        assertEquals(2, roots.size());
+        ReplyResponseDTO orphan = roots.get(1);
+        assertEquals(200L, orphan.getReplyId());
+        assertNotNull(orphan.getChildren());
+        assertEquals(201L, orphan.getChildren().get(0).getReplyId());
+    }
+
+    /**
+     * 每个根回复下：两条直接回复，其中一条再被回复一次
+     * 一半回复缺少摘要点赞数，触发批量补全
+     */
+    private List<ForumContent> buildThread(int roots) {
+        List<ForumContent> thread = new ArrayList<>();
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        long nextId = 100;
+        for (int i = 0; i < roots; i++) {
+            long rootId = nextId++;
+            thread.add(reply(rootId, null, rootId, base.plusMinutes(rootId)));
+            long first = nextId++;
+            thread.add(reply(first, rootId, first, base.plusMinutes(first)));
+            long second = nextId++;
+            thread.add(reply(second, rootId, second, base.plusMinutes(second)));
+            long nested = nextId++;
+            thread.add(reply(nested, first, nested, base.plusMinutes(nested)));
+        }
+        return thread;
+    }
+
+    private ForumContent reply(long id, Long replyTo, long authorId, LocalDateTime createdDate) {
+        ForumContent reply = new ForumContent("reply", "body " + id, authorId, POST_ID, replyTo);
+        reply.setContentId(id);
+        reply.setCreatedDate(createdDate);
+        reply.setLikeCount(id % 2 == 0 ? 1 : null);
+        return reply;
+    }
+
+    private List<UserDTO> buildUsers(List<ForumContent> thread) {
+        List<UserDTO> users = new ArrayList<>();
+        for (ForumContent reply : thread) {
+            users.add(UserDTO.builder().userId(reply.getAuthorId()).username("user" + reply.getAuthorId()).build());
+        }
+        return users;
+    }
+
+    /**
+     * 统计对外调用次数（内存中的未持久化增量查询不算往返）
+     */
+    private int countCalls(Object mock) {
+        int calls = 0;
+        for (Invocation invocation : mockingDetails(mock).getInvocations()) {
+            if (!invocation.getMethod().getName().equals("getPendingLikeDelta")) {
+                calls++;
+            }
+        }
+        return calls;
+    }
+}
@@ -0,0 +1,27 @@
+package com.sg.nusiss.social.config;
+
+import com.sg.nusiss.social.service.conversation.ConversationMembershipCache;
+import com.sg.nusiss.social.service.user.UserService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * 本地缓存的跨节点失效订阅（用户信息、群聊成员）
+ */
+@Configuration
+public class CacheInvalidationConfig {
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                            UserService userService,
+                                                                            ConversationMembershipCache membershipCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(userService, new ChannelTopic(userService.getInvalidationChannel()));
+        container.addMessageListener(membershipCache, new ChannelTopic(membershipCache.getInvalidationChannel()));
+        return container;
+    }
+}
@@ -0,0 +1,29 @@
+package com.sg.nusiss.social.config;
+
+import com.sg.nusiss.social.service.broker.RedisChatBroker;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * 多节点聊天广播的 Redis 订阅配置（social.broker.type=redis 时生效）
+ */
+@Configuration
+@ConditionalOnProperty(name = "social.broker.type", havingValue = "redis")
+public class ChatBrokerConfig {
+
+    @Bean
+    public RedisMessageListenerContainer chatBrokerListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                     RedisChatBroker chatBroker) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // 在订阅线程上同步回调，保持频道内的消息顺序（回调只做分发，不阻塞）
+        container.setTaskExecutor(new SyncTaskExecutor());
+        container.addMessageListener(chatBroker, new ChannelTopic(chatBroker.getChannel()));
+        return container;
+    }
+}
@@ -3,6 +3,8 @@ package com.sg.nusiss.social.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sg.nusiss.social.dto.message.response.MessageResponse;
+import com.sg.nusiss.social.service.cache.MessageResponseCodec;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -47,4 +49,16 @@ public class RedisConfig {
         return template;
     }
 
+    /**
+     * 最近消息缓存专用：值使用紧凑的二进制编码
+     */
+    @Bean
+    public RedisTemplate<String, MessageResponse> messageRedisTemplate(RedisConnectionFactory factory) {
+        RedisTemplate<String, MessageResponse> template = new RedisTemplate<>();
+        template.setConnectionFactory(factory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(new MessageResponseCodec());
+        template.afterPropertiesSet();
+        return template;
+    }
 }
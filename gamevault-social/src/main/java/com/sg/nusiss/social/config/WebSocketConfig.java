@@ -27,6 +27,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
+        // 同一会话的出站消息按发布顺序发送（多节点广播依赖该顺序）
+        config.setPreservePublishOrder(true);
     }
 
     @Override
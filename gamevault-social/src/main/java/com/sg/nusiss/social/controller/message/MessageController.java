@@ -42,18 +42,35 @@ public class MessageController {
 
     /**
      * 获取群聊历史消息
+     * 传 beforeMessageId 时返回该消息之前的 size 条（向上翻页，忽略 page），否则按 page 分页
      */
     @GetMapping("/{conversationId}")
     public BaseResponse<List<MessageResponse>> getMessages(
             @PathVariable(value = "conversationId") Long conversationId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "50") int size) {
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) Long beforeMessageId) {
 
         Long currentUserId = SecurityUtils.getCurrentUserId();
-        List<MessageResponse> messages = messageService.getMessages(conversationId, currentUserId, page, size);
+        List<MessageResponse> messages = beforeMessageId != null
+                ? messageService.getMessagesBefore(conversationId, currentUserId, beforeMessageId, size)
+                : messageService.getMessages(conversationId, currentUserId, page, size);
         return ResultUtils.success(messages);
     }
 
+    /**
+     * 删除自己发送的群聊消息
+     */
+    @DeleteMapping("/{conversationId}/{messageId}")
+    public BaseResponse<Void> deleteMessage(
+            @PathVariable(value = "conversationId") Long conversationId,
+            @PathVariable(value = "messageId") Long messageId) {
+
+        Long currentUserId = SecurityUtils.getCurrentUserId();
+        messageService.deleteMessage(conversationId, messageId, currentUserId);
+        return ResultUtils.success(null);
+    }
+
     /**
      * 发送私聊消息
      */
@@ -1,16 +1,19 @@
 package com.sg.nusiss.social.controller.websocket;
 
+import com.sg.nusiss.common.exception.BusinessException;
 import com.sg.nusiss.social.dto.message.request.SendMessageRequest;
 import com.sg.nusiss.social.dto.message.request.SendPrivateMessageRequest;
 import com.sg.nusiss.social.dto.message.response.MessageResponse;
 import com.sg.nusiss.social.dto.websocket.ChatMessageDto;
+import com.sg.nusiss.social.dto.websocket.SendAckDto;
+import com.sg.nusiss.social.service.broker.ChatBroker;
+import com.sg.nusiss.social.service.message.MessageSendPipeline;
 import com.sg.nusiss.social.service.message.MessageService;
 import com.sg.nusiss.social.service.message.PrivateMessageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Controller;
@@ -23,65 +26,58 @@ import java.security.Principal;
 public class ChatWebSocketController {
 
     private final MessageService messageService;
+    private final MessageSendPipeline messageSendPipeline;
     private final PrivateMessageService privateMessageService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ChatBroker chatBroker;
 
     @MessageMapping("/chat.sendMessage")
     public void sendMessage(@Payload SendMessageRequest request, Principal principal) {
-        try {
-            Long senderId = extractUserIdFromPrincipal(principal);
+        Long senderId = extractUserIdFromPrincipal(principal);
 
-            if (senderId == null) {
-                log.error("无法获取用户 ID");
-                return;
-            }
+        if (senderId == null) {
+            log.error("无法获取用户 ID");
+            return;
+        }
 
-            log.info("收到 WebSocket 消息 - 群聊ID: {}, 发送者: {}, 类型: {}",
-                    request.getConversationId(), senderId, request.getMessageType());
+        log.info("收到 WebSocket 消息 - 群聊ID: {}, 发送者: {}, 类型: {}",
+                request.getConversationId(), senderId, request.getMessageType());
 
-            if ("file".equals(request.getMessageType())) {
-                log.info("文件消息 - fileId: {}, fileName: {}", request.getFileId(), request.getFileName());
-            }
-
-            MessageResponse response = messageService.sendMessage(request, senderId);
-
-            // 直接构建，类型匹配
-            ChatMessageDto.ChatMessageDtoBuilder builder = ChatMessageDto.builder()
-                    .id(response.getId())
-                    .conversationId(response.getConversationId())
-                    .senderId(response.getSenderId())
-                    .senderUsername(response.getSenderUsername())
-                    .senderEmail(response.getSenderEmail())
-                    .content(response.getContent())
-                    .messageType(response.getMessageType())
-                    .timestamp(response.getCreatedAt()); // LocalDateTime -> LocalDateTime
+        if ("file".equals(request.getMessageType())) {
+            log.info("文件消息 - fileId: {}, fileName: {}", request.getFileId(), request.getFileName());
+        }
 
-            if (response.getAttachment() != null) {
-                builder.attachment(
-                        ChatMessageDto.FileAttachment.builder()
-                                .fileId(response.getAttachment().getFileId())
-                                .fileName(response.getAttachment().getFileName())
-                                .fileSize(response.getAttachment().getFileSize())
-                                .fileType(response.getAttachment().getFileType())
-                                .fileExt(response.getAttachment().getFileExt())
-                                .accessUrl(response.getAttachment().getAccessUrl())
-                                .thumbnailUrl(response.getAttachment().getThumbnailUrl())
-                                .build()
-                );
-            }
+        // 先广播、后台批量保存
+        if (messageSendPipeline.isEnabled()) {
+            messageSendPipeline.send(request, senderId, principal.getName());
+            return;
+        }
 
-            ChatMessageDto chatMessage = builder.build();
+        // 同步发送：保存后再广播
+        long started = System.nanoTime();
+        try {
+            MessageResponse response = messageService.sendMessage(request, senderId);
 
-            messagingTemplate.convertAndSend(
+            chatBroker.publish(
                     "/topic/chat/" + request.getConversationId(),
-                    chatMessage
+                    MessageSendPipeline.toChatMessage(response, request.getClientMessageId())
             );
+            messageSendPipeline.sendAck(principal.getName(), SendAckDto.builder()
+                    .clientMessageId(request.getClientMessageId())
+                    .messageId(response.getId())
+                    .conversationId(response.getConversationId())
+                    .status("accepted")
+                    .build());
+            messageSendPipeline.recordSyncLatency(started);
 
             log.info("消息已广播 - 群聊ID: {}, 消息ID: {}",
                     request.getConversationId(), response.getId());
 
+        } catch (BusinessException e) {
+            log.info("拒绝发送消息 - 群聊ID: {}, 原因: {}", request.getConversationId(), e.getMessage());
+            messageSendPipeline.sendAck(principal.getName(), MessageSendPipeline.rejected(request, e.getMessage()));
         } catch (Exception e) {
             log.error("处理 WebSocket 消息失败", e);
+            messageSendPipeline.sendAck(principal.getName(), MessageSendPipeline.rejected(request, "消息发送失败"));
         }
     }
 
@@ -131,12 +127,12 @@ public class ChatWebSocketController {
 
             ChatMessageDto chatMessage = builder.build();
 
-            messagingTemplate.convertAndSend(
+            chatBroker.publish(
                     "/topic/private/" + request.getReceiverId(),
                     chatMessage
             );
 
-            messagingTemplate.convertAndSend(
+            chatBroker.publish(
                     "/topic/private/" + senderId,
                     chatMessage
             );
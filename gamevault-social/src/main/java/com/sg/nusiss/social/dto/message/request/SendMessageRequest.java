@@ -28,4 +28,7 @@ public class SendMessageRequest {
     private String fileExt;
     private String accessUrl;
     private String thumbnailUrl;
+
+    // 客户端生成的消息标识，回执和广播中原样带回
+    private String clientMessageId;
 }
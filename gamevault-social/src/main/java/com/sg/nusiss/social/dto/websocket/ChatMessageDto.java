@@ -12,7 +12,10 @@ import java.time.LocalDateTime;
  * @ClassName ChatMessageDto
  * @Author HUANG ZHENJIA
  * @Date 2025/10/5
- * @Description
+ * @Description 广播到 /topic/chat/{群聊ID} 的消息帧
+ *
+ * event 为空时是一条新消息；event 为 "retracted" 时表示之前广播的消息 id 未能保存（已撤回），
+ * 此时只带 id、conversationId、senderId 和 clientMessageId，客户端应从界面上移除该消息。
  */
 @Data
 @Builder
@@ -29,6 +32,9 @@ public class ChatMessageDto {
     private String content;
     private String messageType;
     private LocalDateTime timestamp;
+    private String clientMessageId;
+    // 为空时是新消息，"retracted" 表示撤回
+    private String event;
 
     private FileAttachment attachment;
 
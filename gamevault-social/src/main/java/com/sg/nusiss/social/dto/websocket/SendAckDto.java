@@ -0,0 +1,28 @@
+package com.sg.nusiss.social.dto.websocket;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 发送回执，推送到发送者的 /user/queue/ack
+ *
+ * status:
+ * - accepted: 消息已广播并进入持久化队列，messageId 为服务端分配的消息ID
+ * - rejected: 消息未被接受（无权限、内容为空、服务繁忙等），reason 为原因
+ * - failed: 消息已广播但未能保存，同时在群聊主题上广播撤回帧（见 ChatMessageDto.event）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SendAckDto {
+    private String clientMessageId;
+    private Long messageId;
+    private Long conversationId;
+    private String status; // "accepted" | "rejected" | "failed"
+    private String reason;
+}
@@ -17,6 +17,7 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "messages", indexes = {
         @Index(name = "idx_messages_conversation", columnList = "conversation_id"),
+        @Index(name = "idx_messages_conversation_id", columnList = "conversation_id, id"),
         @Index(name = "idx_messages_sender", columnList = "sender_id"),
         @Index(name = "idx_messages_receiver", columnList = "receiver_id"),
         @Index(name = "idx_messages_file_id", columnList = "file_id"),
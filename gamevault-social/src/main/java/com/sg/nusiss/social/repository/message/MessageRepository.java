@@ -37,6 +37,12 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     @Query("SELECT m FROM Message m WHERE m.conversationId = ?1 AND m.id < ?2 AND m.isDeleted = false ORDER BY m.createdAt DESC")
     Page<Message> findHistoryBeforeMessage(Long conversationId, Long messageId, Pageable pageable);
 
+    /**
+     * 查询ID在 [floorId, beforeId) 范围内的消息，按ID从新到旧（历史分段，不查总数）
+     */
+    @Query("SELECT m FROM Message m WHERE m.conversationId = ?1 AND m.id >= ?2 AND m.id < ?3 AND m.isDeleted = false ORDER BY m.id DESC")
+    List<Message> findHistorySegment(Long conversationId, Long floorId, Long beforeId, Pageable pageable);
+
     // 私聊消息查询（双向）
     @Query("SELECT m FROM Message m WHERE m.chatType = 'private' AND " +
             "((m.senderId = ?1 AND m.receiverId = ?2) OR (m.senderId = ?2 AND m.receiverId = ?1)) " +
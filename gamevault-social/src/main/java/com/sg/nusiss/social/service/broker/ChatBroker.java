@@ -0,0 +1,18 @@
+package com.sg.nusiss.social.service.broker;
+
+/**
+ * 聊天消息广播
+ *
+ * ChatWebSocketController 通过它把消息发送到 STOMP 目的地（/topic/chat/{群聊ID}、/topic/private/{用户ID}），
+ * 由实现决定只投递给本节点的订阅者（{@link LocalChatBroker}），还是同时转发给其他节点（{@link RedisChatBroker}）。
+ * 同一节点发往同一目的地的消息按调用顺序投递。
+ */
+public interface ChatBroker {
+
+    /**
+     * 广播消息到目的地的所有订阅者
+     * @param destination STOMP 目的地
+     * @param payload 消息体（按 JSON 序列化）
+     */
+    void publish(String destination, Object payload);
+}
@@ -0,0 +1,26 @@
+package com.sg.nusiss.social.service.broker;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * 单节点广播：直接交给本 JVM 的 STOMP 代理（social.broker.type=local）
+ * 只适用于单实例部署和本地开发，其他节点上的订阅者收不到消息
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "social.broker.type", havingValue = "local", matchIfMissing = true)
+public class LocalChatBroker implements ChatBroker {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Override
+    public void publish(String destination, Object payload) {
+        messagingTemplate.convertAndSend(destination, payload);
+        log.debug("消息已本地广播 - 目的地: {}", destination);
+    }
+}
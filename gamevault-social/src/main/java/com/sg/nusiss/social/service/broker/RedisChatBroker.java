@@ -0,0 +1,182 @@
+package com.sg.nusiss.social.service.broker;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多节点广播：本节点直接投递，同时通过 Redis pub/sub 转发给其他节点（social.broker.type=redis）
+ *
+ * - 本节点的订阅者不经过 Redis，直接交给本 JVM 的 STOMP 代理
+ * - 转发的消息带上节点ID，节点收到自己发出的消息时忽略
+ * - 发布端按目的地分段加锁，锁内只做本地投递和放入该分段的发布队列，
+ *   由每个分段一个的发布线程按入队顺序发到 Redis，入站线程不等待 Redis
+ * - 顺序：同一目的地的本地投递和 Redis 发布顺序一致；
+ *   Redis 在一个频道内按发布顺序推送，接收端在订阅线程上按目的地分发到固定的单线程执行器，
+ *   因此同一节点发往同一群聊的消息在所有节点上按相同顺序投递
+ *
+ * 消息体只序列化一次，其他节点收到后原样作为 JSON 发送给客户端。
+ * Redis 不可用时本节点的订阅者仍能收到消息，其他节点的订阅者需要重新拉取历史消息；
+ * 发布队列满时（Redis 长时间缓慢或不可用）丢弃转发，不阻塞本地投递。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "social.broker.type", havingValue = "redis")
+public class RedisChatBroker implements ChatBroker, MessageListener {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 发布端按目的地分段的锁
+    private final Object[] publishLocks;
+    // 发布端按目的地分段的单线程 Redis 发布器（有界队列）
+    private final ExecutorService[] publishers;
+    // 接收端按目的地分段的单线程执行器
+    private final ExecutorService[] dispatchers;
+
+    public RedisChatBroker(SimpMessagingTemplate messagingTemplate,
+                           StringRedisTemplate redisTemplate,
+                           ObjectMapper objectMapper,
+                           @Value("${social.broker.redis.channel:chat:broadcast}") String channel,
+                           @Value("${social.broker.redis.stripes:8}") int stripes,
+                           @Value("${social.broker.redis.publish-queue-capacity:10000}") int publishQueueCapacity) {
+        if (stripes <= 0 || publishQueueCapacity <= 0) {
+            throw new IllegalArgumentException("分段数和发布队列容量必须为正数");
+        }
+        this.messagingTemplate = messagingTemplate;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.channel = channel;
+        this.publishLocks = new Object[stripes];
+        this.publishers = new ExecutorService[stripes];
+        this.dispatchers = new ExecutorService[stripes];
+        for (int i = 0; i < stripes; i++) {
+            publishLocks[i] = new Object();
+            int index = i;
+            publishers[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(publishQueueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, "chat-broker-publish-" + index);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            dispatchers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "chat-broker-dispatch-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void publish(String destination, Object payload) {
+        String json;
+        String envelope;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+            envelope = objectMapper.writeValueAsString(new Envelope(nodeId, destination, json));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("消息序列化失败: " + e.getOriginalMessage(), e);
+        }
+
+        int stripe = stripe(destination);
+        synchronized (publishLocks[stripe]) {
+            deliverLocally(destination, json);
+            try {
+                publishers[stripe].execute(() -> forward(destination, envelope));
+            } catch (RejectedExecutionException e) {
+                log.error("转发队列已满，消息未转发到其他节点 - 目的地: {}", destination);
+            }
+        }
+    }
+
+    /**
+     * 在分段的发布线程上执行，Redis 缓慢时只阻塞该线程
+     */
+    private void forward(String destination, String envelope) {
+        try {
+            redisTemplate.convertAndSend(channel, envelope);
+        } catch (Exception e) {
+            log.error("消息转发到其他节点失败 - 目的地: {}, 错误: {}", destination, e.getMessage());
+        }
+    }
+
+    /**
+     * Redis 订阅回调（在订阅线程上按顺序调用），只做解析和分发
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Envelope envelope;
+        try {
+            envelope = objectMapper.readValue(message.getBody(), Envelope.class);
+        } catch (Exception e) {
+            log.warn("忽略无法解析的广播消息: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(envelope.origin())) {
+            return;
+        }
+        dispatchers[stripe(envelope.destination())].execute(() -> {
+            try {
+                deliverLocally(envelope.destination(), envelope.payload());
+            } catch (Exception e) {
+                log.error("投递其他节点的消息失败 - 目的地: {}", envelope.destination(), e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService publisher : publishers) {
+            publisher.shutdown();
+        }
+        for (ExecutorService dispatcher : dispatchers) {
+            dispatcher.shutdown();
+        }
+    }
+
+    private void deliverLocally(String destination, String json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.send(destination,
+                MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders()));
+    }
+
+    private int stripe(String destination) {
+        return Math.floorMod(destination.hashCode(), publishLocks.length);
+    }
+
+    /**
+     * Redis 中传递的消息：来源节点、目的地和已序列化的消息体
+     */
+    record Envelope(String origin, String destination, String payload) {
+    }
+}
@@ -1,35 +1,46 @@
 package com.sg.nusiss.social.service.cache;
 
 import com.sg.nusiss.social.dto.message.response.MessageResponse;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
  * @ClassName MessageCacheService
  * @Author HUANG ZHENJIA
  * @Date 2025/10/5
- * @Description
+ * @Description 群聊最近消息缓存（Redis 列表，值为 {@link MessageResponseCodec} 二进制编码）
+ *
+ * 写入都在 MULTI/EXEC 中完成（RPUSH + LTRIM + EXPIRE），并通过管道一次发出，
+ * 每次写入只有一次网络往返，读者不会看到超长或被清空的列表。
  */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class MessageCacheService {
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisTemplate<String, MessageResponse> redisTemplate;
 
-    // Redis key 前缀
-    private static final String MESSAGE_CACHE_PREFIX = "chat:messages:";
+    // Redis key 前缀（v2：二进制编码，旧的 JSON 缓存按过期时间自然淘汰）
+    private static final String MESSAGE_CACHE_PREFIX = "chat:messages:v2:";
     // 每个群聊缓存最近多少条消息
     private static final int CACHE_SIZE = 100;
     // 缓存过期时间（天）
     private static final long CACHE_EXPIRE_DAYS = 7;
 
+    public MessageCacheService(RedisTemplate<String, MessageResponse> messageRedisTemplate) {
+        this.redisTemplate = messageRedisTemplate;
+    }
+
     /**
      * 获取 Redis key
      */
@@ -41,23 +52,27 @@ public class MessageCacheService {
      * 缓存单条消息
      */
     public void cacheMessage(MessageResponse message) {
-        try {
-            String key = getCacheKey(message.getConversationId());
-
-            // 添加到列表末尾（最新消息）
-            redisTemplate.opsForList().rightPush(key, message);
+        cacheMessages(List.of(message));
+    }
 
-            // 保持列表长度
-            Long size = redisTemplate.opsForList().size(key);
-            if (size != null && size > CACHE_SIZE) {
-                redisTemplate.opsForList().leftPop(key);
+    /**
+     * 追加多条消息（可以属于不同群聊），所有群聊的写入在一个管道中发出
+     */
+    public void cacheMessages(List<MessageResponse> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        try {
+            // 按群聊分组，保持原有顺序
+            Map<String, List<MessageResponse>> byKey = new LinkedHashMap<>();
+            for (MessageResponse message : messages) {
+                byKey.computeIfAbsent(getCacheKey(message.getConversationId()), key -> new ArrayList<>())
+                        .add(message);
             }
 
-            // 设置过期时间
-            redisTemplate.expire(key, CACHE_EXPIRE_DAYS, TimeUnit.DAYS);
+            executeInPipeline(byKey, false);
 
-            log.debug("消息已缓存 - 群聊ID: {}, 消息ID: {}",
-                    message.getConversationId(), message.getId());
+            log.debug("消息已缓存 - 群聊数: {}, 消息数: {}", byKey.size(), messages.size());
         } catch (Exception e) {
             log.error("缓存消息失败", e);
             // 不抛异常，让主流程继续
@@ -68,32 +83,19 @@ public class MessageCacheService {
      * 获取缓存的最近消息
      */
     public List<MessageResponse> getCachedMessages(Long conversationId, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
         try {
-            String key = getCacheKey(conversationId);
-
-            Long size = redisTemplate.opsForList().size(key);
-            if (size == null || size == 0) {
-                return new ArrayList<>();
-            }
-
-            // 获取最后 limit 条
-            long start = Math.max(0, size - limit);
-            List<Object> cached = redisTemplate.opsForList().range(key, start, -1);
+            // 直接按负数下标取最后 limit 条，不需要先查长度
+            List<MessageResponse> cached = redisTemplate.opsForList().range(getCacheKey(conversationId), -limit, -1);
 
             if (cached == null || cached.isEmpty()) {
                 return new ArrayList<>();
             }
 
-            // 转换类型
-            List<MessageResponse> messages = new ArrayList<>();
-            for (Object obj : cached) {
-                if (obj instanceof MessageResponse) {
-                    messages.add((MessageResponse) obj);
-                }
-            }
-
-            log.debug("从缓存获取消息 - 群聊ID: {}, 数量: {}", conversationId, messages.size());
-            return messages;
+            log.debug("从缓存获取消息 - 群聊ID: {}, 数量: {}", conversationId, cached.size());
+            return new ArrayList<>(cached);
         } catch (Exception e) {
             log.error("获取缓存消息失败", e);
             return new ArrayList<>();
@@ -101,7 +103,7 @@ public class MessageCacheService {
     }
 
     /**
-     * 批量缓存消息（初始化缓存用）
+     * 批量缓存消息（初始化缓存用），在同一个事务中替换整个列表
      */
     public void batchCacheMessages(Long conversationId, List<MessageResponse> messages) {
         try {
@@ -109,22 +111,11 @@ public class MessageCacheService {
                 return;
             }
 
-            String key = getCacheKey(conversationId);
-
-            // 清空旧缓存
-            redisTemplate.delete(key);
-
             // 只缓存最近的消息
             int start = Math.max(0, messages.size() - CACHE_SIZE);
             List<MessageResponse> toCache = messages.subList(start, messages.size());
 
-            // 批量添加
-            for (MessageResponse msg : toCache) {
-                redisTemplate.opsForList().rightPush(key, msg);
-            }
-
-            // 设置过期时间
-            redisTemplate.expire(key, CACHE_EXPIRE_DAYS, TimeUnit.DAYS);
+            executeInPipeline(Map.of(getCacheKey(conversationId), toCache), true);
 
             log.info("批量缓存消息 - 群聊ID: {}, 数量: {}", conversationId, toCache.size());
         } catch (Exception e) {
@@ -144,4 +135,30 @@ public class MessageCacheService {
             log.error("清除缓存失败", e);
         }
     }
+
+    /**
+     * 每个 key 一个 MULTI/EXEC：[DEL] + RPUSH(多值) + LTRIM + EXPIRE，全部通过一个管道发出
+     * @param replace 是否先删除原列表（初始化缓存）
+     */
+    private void executeInPipeline(Map<String, List<MessageResponse>> byKey, boolean replace) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, MessageResponse> ops = (RedisOperations<String, MessageResponse>) operations;
+                for (Map.Entry<String, List<MessageResponse>> entry : byKey.entrySet()) {
+                    String key = entry.getKey();
+                    ops.multi();
+                    if (replace) {
+                        ops.delete(key);
+                    }
+                    ops.opsForList().rightPushAll(key, entry.getValue());
+                    ops.opsForList().trim(key, -CACHE_SIZE, -1);
+                    ops.expire(key, CACHE_EXPIRE_DAYS, TimeUnit.DAYS);
+                    ops.exec();
+                }
+                return null;
+            }
+        }, RedisSerializer.string());
+    }
 }
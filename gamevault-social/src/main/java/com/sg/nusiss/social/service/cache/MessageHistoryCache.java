@@ -0,0 +1,245 @@
+package com.sg.nusiss.social.service.cache;
+
+import com.sg.nusiss.common.transaction.TransactionUtils;
+import com.sg.nusiss.social.dto.message.response.MessageResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 群聊历史消息分段缓存
+ *
+ * 每个分段 [lo, hi) 保存该群聊中ID在此范围内的全部未删除消息（从旧到新），最多 segment-size 条：
+ * - 分段数据：chat:history:seg:{群聊ID}:{hi}，列表，值为 {@link MessageResponseCodec} 编码
+ * - 分段索引：chat:history:idx:{群聊ID}，有序集合，成员 "hi:lo"，分数 hi
+ * - 删除版本：chat:history:ver:{群聊ID}，每次删除消息加一
+ *
+ * 分段只在范围内不会再出现新消息时才写入（见 MessageIdAllocator.settledId），写入后内容不变，
+ * 只有删除其中的消息时才失效。分段和索引都有过期时间，索引指向的分段已过期时按未命中处理。
+ *
+ * 读者在查数据库之前先取删除版本，写入时 WATCH 版本并在同一个 MULTI 中写数据和索引：
+ * 加载期间有消息被删除（版本变化）时放弃写入，避免把删除前读到的分段放回缓存。
+ */
+@Slf4j
+@Service
+public class MessageHistoryCache {
+
+    private static final String SEGMENT_PREFIX = "chat:history:seg:";
+    private static final String INDEX_PREFIX = "chat:history:idx:";
+    private static final String VERSION_PREFIX = "chat:history:ver:";
+    /** 读取删除版本失败时返回，此次加载的分段不写入缓存 */
+    public static final long UNKNOWN_VERSION = -1;
+
+    private final RedisTemplate<String, MessageResponse> messageRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final int segmentSize;
+    private final Duration segmentTtl;
+
+    public MessageHistoryCache(RedisTemplate<String, MessageResponse> messageRedisTemplate,
+                               StringRedisTemplate stringRedisTemplate,
+                               @Value("${social.message.history.segment-size:50}") int segmentSize,
+                               @Value("${social.message.history.segment-ttl:24h}") Duration segmentTtl) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("分段大小必须为正数");
+        }
+        this.messageRedisTemplate = messageRedisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.segmentSize = segmentSize;
+        this.segmentTtl = segmentTtl;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * 分段范围 [lo, hi)
+     */
+    public record Segment(long lo, long hi) {
+
+        static Segment parse(String member) {
+            int separator = member.indexOf(':');
+            return new Segment(Long.parseLong(member.substring(separator + 1)),
+                    Long.parseLong(member.substring(0, separator)));
+        }
+
+        String member() {
+            return hi + ":" + lo;
+        }
+    }
+
+    /**
+     * 查找包含 beforeId 之前一条消息的分段（lo < beforeId <= hi）
+     */
+    public Optional<Segment> findCovering(Long conversationId, long beforeId) {
+        try {
+            Set<String> members = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(indexKey(conversationId), beforeId, Double.POSITIVE_INFINITY, 0, 1);
+            if (members == null || members.isEmpty()) {
+                return Optional.empty();
+            }
+            Segment segment = Segment.parse(members.iterator().next());
+            return segment.lo() < beforeId ? Optional.of(segment) : Optional.empty();
+        } catch (Exception e) {
+            log.error("查询历史分段索引失败 - 群聊ID: {}", conversationId, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * beforeId 之下最近的已缓存分段的上界（没有时为 0），新分段从数据库读取时不需要越过它
+     */
+    public long floorBelow(Long conversationId, long beforeId) {
+        try {
+            Set<ZSetOperations.TypedTuple<String>> below = stringRedisTemplate.opsForZSet()
+                    .reverseRangeByScoreWithScores(indexKey(conversationId),
+                            Double.NEGATIVE_INFINITY, beforeId - 1, 0, 1);
+            if (below == null || below.isEmpty()) {
+                return 0;
+            }
+            return Segment.parse(below.iterator().next().getValue()).hi();
+        } catch (Exception e) {
+            log.error("查询历史分段索引失败 - 群聊ID: {}", conversationId, e);
+            return 0;
+        }
+    }
+
+    /**
+     * 读取分段内容（从旧到新），分段已过期时清理索引并返回空列表
+     */
+    public List<MessageResponse> read(Long conversationId, Segment segment) {
+        try {
+            List<MessageResponse> messages = messageRedisTemplate.opsForList()
+                    .range(segmentKey(conversationId, segment.hi()), 0, -1);
+            if (messages == null || messages.isEmpty()) {
+                stringRedisTemplate.opsForZSet().remove(indexKey(conversationId), segment.member());
+                return new ArrayList<>();
+            }
+            return messages;
+        } catch (Exception e) {
+            log.error("读取历史分段失败 - 群聊ID: {}, 分段: {}", conversationId, segment, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 当前删除版本（从数据库加载分段之前读取，写入分段时原样传回）
+     */
+    public long currentVersion(Long conversationId) {
+        try {
+            return parseVersion(stringRedisTemplate.opsForValue().get(versionKey(conversationId)));
+        } catch (Exception e) {
+            log.error("读取历史分段版本失败 - 群聊ID: {}", conversationId, e);
+            return UNKNOWN_VERSION;
+        }
+    }
+
+    /**
+     * 保存分段（messages 从旧到新，不能为空）
+     * WATCH 删除版本，版本仍为 version 时在一个 MULTI 中写入数据和索引，否则放弃
+     * @return 是否写入
+     */
+    @SuppressWarnings("unchecked")
+    public boolean store(Long conversationId, long version, Segment segment, List<MessageResponse> messages) {
+        if (version == UNKNOWN_VERSION) {
+            return false;
+        }
+        RedisSerializer<String> strings = RedisSerializer.string();
+        RedisSerializer<MessageResponse> values =
+                (RedisSerializer<MessageResponse>) messageRedisTemplate.getValueSerializer();
+        byte[] versionKey = strings.serialize(versionKey(conversationId));
+        byte[] key = strings.serialize(segmentKey(conversationId, segment.hi()));
+        byte[] indexKey = strings.serialize(indexKey(conversationId));
+        byte[] member = strings.serialize(segment.member());
+        byte[][] encoded = messages.stream().map(values::serialize).toArray(byte[][]::new);
+        long ttlSeconds = segmentTtl.toSeconds();
+        try {
+            Boolean stored = messageRedisTemplate.execute((RedisCallback<Boolean>) connection -> {
+                connection.watch(versionKey);
+                byte[] current = connection.stringCommands().get(versionKey);
+                if (parseVersion(current == null ? null : strings.deserialize(current)) != version) {
+                    connection.unwatch();
+                    return false;
+                }
+                connection.multi();
+                connection.keyCommands().del(key);
+                connection.listCommands().rPush(key, encoded);
+                connection.keyCommands().expire(key, ttlSeconds);
+                connection.zSetCommands().zAdd(indexKey, segment.hi(), member);
+                connection.keyCommands().expire(indexKey, ttlSeconds);
+                // WATCH 的版本被修改时事务被放弃，返回空
+                List<Object> results = connection.exec();
+                return results != null && !results.isEmpty();
+            });
+            if (Boolean.TRUE.equals(stored)) {
+                log.debug("缓存历史分段 - 群聊ID: {}, 分段: {}, 数量: {}", conversationId, segment, messages.size());
+                return true;
+            }
+            log.debug("加载期间有消息被删除，放弃缓存历史分段 - 群聊ID: {}, 分段: {}", conversationId, segment);
+            return false;
+        } catch (Exception e) {
+            log.error("缓存历史分段失败 - 群聊ID: {}, 分段: {}", conversationId, segment, e);
+            return false;
+        }
+    }
+
+    /**
+     * 消息删除后使包含它的分段失效：有事务时在提交后执行，
+     * 先增加删除版本（让正在加载的读者放弃写入），再删除已缓存的分段
+     */
+    public void evict(Long conversationId, long messageId) {
+        TransactionUtils.afterCommit(() -> evictNow(conversationId, messageId));
+    }
+
+    private void evictNow(Long conversationId, long messageId) {
+        try {
+            String versionKey = versionKey(conversationId);
+            stringRedisTemplate.opsForValue().increment(versionKey);
+            stringRedisTemplate.expire(versionKey, segmentTtl);
+
+            String indexKey = indexKey(conversationId);
+            Set<String> members = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(indexKey, messageId + 1, Double.POSITIVE_INFINITY);
+            if (members == null) {
+                return;
+            }
+            for (String member : members) {
+                Segment segment = Segment.parse(member);
+                if (segment.lo() <= messageId) {
+                    stringRedisTemplate.opsForZSet().remove(indexKey, member);
+                    messageRedisTemplate.delete(segmentKey(conversationId, segment.hi()));
+                    log.info("历史分段失效 - 群聊ID: {}, 分段: {}, 删除的消息ID: {}", conversationId, segment, messageId);
+                }
+            }
+        } catch (Exception e) {
+            log.error("历史分段失效失败 - 群聊ID: {}, 消息ID: {}", conversationId, messageId, e);
+        }
+    }
+
+    private static long parseVersion(String value) {
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    private String segmentKey(Long conversationId, long hi) {
+        return SEGMENT_PREFIX + conversationId + ":" + hi;
+    }
+
+    private String indexKey(Long conversationId) {
+        return INDEX_PREFIX + conversationId;
+    }
+
+    private String versionKey(Long conversationId) {
+        return VERSION_PREFIX + conversationId;
+    }
+}
@@ -0,0 +1,174 @@
+package com.sg.nusiss.social.service.cache;
+
+import com.sg.nusiss.social.dto.message.response.MessageResponse;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * 缓存消息的二进制编码（替代带类名的 JSON）
+ *
+ * 格式：版本号(1字节) + 字段存在位图(varint) + 按固定顺序写出的非空字段。
+ * 整数用 varint，字符串为 varint 长度 + UTF-8，时间为 UTC 秒数(varint) + 纳秒(varint)。
+ * 新增字段只能追加到末尾并升级版本号，读取时按版本号解析。
+ */
+public class MessageResponseCodec implements RedisSerializer<MessageResponse> {
+
+    private static final byte VERSION = 1;
+
+    private static final int ID = 0;
+    private static final int CONVERSATION_ID = 1;
+    private static final int SENDER_ID = 2;
+    private static final int RECEIVER_ID = 3;
+    private static final int SENDER_USERNAME = 4;
+    private static final int SENDER_EMAIL = 5;
+    private static final int CONTENT = 6;
+    private static final int CHAT_TYPE = 7;
+    private static final int MESSAGE_TYPE = 8;
+    private static final int CREATED_AT = 9;
+    private static final int FILE_ID = 10;
+    private static final int FILE_NAME = 11;
+    private static final int FILE_SIZE = 12;
+    private static final int FILE_TYPE = 13;
+    private static final int FILE_EXT = 14;
+    private static final int ACCESS_URL = 15;
+    private static final int THUMBNAIL_URL = 16;
+    // 有附件但附件字段全为空时也要能还原出附件对象
+    private static final int HAS_ATTACHMENT = 17;
+
+    @Override
+    public byte[] serialize(MessageResponse message) throws SerializationException {
+        if (message == null) {
+            return null;
+        }
+        MessageResponse.FileAttachment attachment = message.getAttachment();
+        Object[] fields = {
+                message.getId(), message.getConversationId(), message.getSenderId(), message.getReceiverId(),
+                message.getSenderUsername(), message.getSenderEmail(), message.getContent(),
+                message.getChatType(), message.getMessageType(), message.getCreatedAt(),
+                attachment != null ? attachment.getFileId() : null,
+                attachment != null ? attachment.getFileName() : null,
+                attachment != null ? attachment.getFileSize() : null,
+                attachment != null ? attachment.getFileType() : null,
+                attachment != null ? attachment.getFileExt() : null,
+                attachment != null ? attachment.getAccessUrl() : null,
+                attachment != null ? attachment.getThumbnailUrl() : null,
+        };
+
+        long presence = attachment != null ? 1L << HAS_ATTACHMENT : 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                presence |= 1L << i;
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        out.write(VERSION);
+        writeVarLong(out, presence);
+        for (Object field : fields) {
+            if (field instanceof Long value) {
+                writeVarLong(out, value);
+            } else if (field instanceof String value) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(out, bytes.length);
+                out.write(bytes, 0, bytes.length);
+            } else if (field instanceof LocalDateTime value) {
+                writeVarLong(out, value.toEpochSecond(ZoneOffset.UTC));
+                writeVarLong(out, value.getNano());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public MessageResponse deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new SerializationException("不支持的消息编码版本: " + version);
+            }
+            long presence = readVarLong(in);
+
+            MessageResponse.MessageResponseBuilder builder = MessageResponse.builder()
+                    .id(readLong(in, presence, ID))
+                    .conversationId(readLong(in, presence, CONVERSATION_ID))
+                    .senderId(readLong(in, presence, SENDER_ID))
+                    .receiverId(readLong(in, presence, RECEIVER_ID))
+                    .senderUsername(readString(in, presence, SENDER_USERNAME))
+                    .senderEmail(readString(in, presence, SENDER_EMAIL))
+                    .content(readString(in, presence, CONTENT))
+                    .chatType(readString(in, presence, CHAT_TYPE))
+                    .messageType(readString(in, presence, MESSAGE_TYPE))
+                    .createdAt(has(presence, CREATED_AT)
+                            ? LocalDateTime.ofEpochSecond(readVarLong(in), (int) readVarLong(in), ZoneOffset.UTC)
+                            : null);
+
+            MessageResponse.FileAttachment attachment = MessageResponse.FileAttachment.builder()
+                    .fileId(readString(in, presence, FILE_ID))
+                    .fileName(readString(in, presence, FILE_NAME))
+                    .fileSize(readLong(in, presence, FILE_SIZE))
+                    .fileType(readString(in, presence, FILE_TYPE))
+                    .fileExt(readString(in, presence, FILE_EXT))
+                    .accessUrl(readString(in, presence, ACCESS_URL))
+                    .thumbnailUrl(readString(in, presence, THUMBNAIL_URL))
+                    .build();
+            if (has(presence, HAS_ATTACHMENT)) {
+                builder.attachment(attachment);
+            }
+            return builder.build();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | ArithmeticException e) {
+            throw new SerializationException("消息解码失败", e);
+        }
+    }
+
+    private static boolean has(long presence, int field) {
+        return (presence & (1L << field)) != 0;
+    }
+
+    private static Long readLong(ByteBuffer in, long presence, int field) {
+        return has(presence, field) ? readVarLong(in) : null;
+    }
+
+    private static String readString(ByteBuffer in, long presence, int field) {
+        if (!has(presence, field)) {
+            return null;
+        }
+        int length = Math.toIntExact(readVarLong(in));
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * 无符号 varint（每字节 7 位，最高位表示后面还有字节），负数固定占 10 字节
+     */
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint 过长");
+    }
+}
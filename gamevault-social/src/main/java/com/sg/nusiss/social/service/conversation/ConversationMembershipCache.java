@@ -0,0 +1,151 @@
+package com.sg.nusiss.social.service.conversation;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.sg.nusiss.common.domain.ErrorCode;
+import com.sg.nusiss.common.exception.BusinessException;
+import com.sg.nusiss.common.transaction.TransactionUtils;
+import com.sg.nusiss.social.entity.conversation.Conversation;
+import com.sg.nusiss.social.repository.conversation.ConversationRepository;
+import com.sg.nusiss.social.repository.conversation.MemberRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 群聊成员缓存（发送、读取消息时的权限校验）
+ *
+ * 每个群聊缓存一份快照：群聊状态 + 活跃成员ID集合，首次校验时从数据库加载，
+ * 之后每条消息的校验只是本地集合查询。群聊不存在时不缓存。
+ *
+ * 添加成员、移除成员、解散群聊后调用 {@link #invalidate}：在事务提交后失效本节点的快照，
+ * 并通过 Redis pub/sub 通知其他节点。ttl-seconds 是通知丢失时的兜底。
+ */
+@Slf4j
+@Component
+public class ConversationMembershipCache implements MessageListener {
+
+    private final ConversationRepository conversationRepository;
+    private final MemberRepository memberRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final LoadingCache<Long, Membership> cache;
+    private final String invalidationChannel;
+
+    public ConversationMembershipCache(ConversationRepository conversationRepository,
+                                       MemberRepository memberRepository,
+                                       StringRedisTemplate stringRedisTemplate,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${social.membership-cache.max-size:10000}") long maxSize,
+                                       @Value("${social.membership-cache.ttl-seconds:600}") long ttlSeconds,
+                                       @Value("${social.membership-cache.invalidation-channel:conversation:members:invalidate}")
+                                       String invalidationChannel) {
+        this.conversationRepository = conversationRepository;
+        this.memberRepository = memberRepository;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.invalidationChannel = invalidationChannel;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build(this::load);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "social.membership");
+    }
+
+    /**
+     * 群聊快照：状态和活跃成员
+     */
+    record Membership(String status, Set<Long> activeMemberIds) {
+
+        boolean isDissolved() {
+            return "dissolved".equals(status);
+        }
+    }
+
+    public String getInvalidationChannel() {
+        return invalidationChannel;
+    }
+
+    /**
+     * 发送校验：群聊存在、未解散，且用户是活跃成员
+     */
+    public void checkCanSend(Long conversationId, Long userId) {
+        Membership membership = get(conversationId);
+        if (membership.isDissolved()) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "群聊已解散，无法发送消息");
+        }
+        if (!membership.activeMemberIds().contains(userId)) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "您不在该群聊中");
+        }
+    }
+
+    /**
+     * 读取校验：群聊存在，且用户是活跃成员
+     */
+    public void checkCanRead(Long conversationId, Long userId) {
+        if (!get(conversationId).activeMemberIds().contains(userId)) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "您不在该群聊中");
+        }
+    }
+
+    /**
+     * 群聊成员或状态变化后调用：有事务时在提交后失效，避免并发加载把提交前的数据放回缓存
+     */
+    public void invalidate(Long conversationId) {
+        TransactionUtils.afterCommit(() -> invalidateAndPublish(conversationId));
+    }
+
+    /**
+     * 收到其他节点（或本节点）的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            cache.invalidate(Long.parseLong(body.trim()));
+            log.debug("群聊成员缓存失效 - 群聊ID: {}", body);
+        } catch (NumberFormatException e) {
+            log.warn("忽略无法解析的群聊成员缓存失效通知: {}", body);
+        }
+    }
+
+    private Membership get(Long conversationId) {
+        if (conversationId == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "群聊ID不能为空");
+        }
+        Membership membership = cache.get(conversationId);
+        if (membership == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "群聊不存在");
+        }
+        return membership;
+    }
+
+    private Membership load(Long conversationId) {
+        Conversation conversation = conversationRepository.findById(conversationId).orElse(null);
+        if (conversation == null) {
+            return null;
+        }
+        Set<Long> members = Set.copyOf(memberRepository.findActiveUserIds(conversationId));
+        log.debug("加载群聊成员 - 群聊ID: {}, 状态: {}, 活跃成员数: {}",
+                conversationId, conversation.getStatus(), members.size());
+        return new Membership(conversation.getStatus(), members);
+    }
+
+    private void invalidateAndPublish(Long conversationId) {
+        cache.invalidate(conversationId);
+        try {
+            stringRedisTemplate.convertAndSend(invalidationChannel, String.valueOf(conversationId));
+        } catch (Exception e) {
+            log.error("发送群聊成员缓存失效通知失败 - 群聊ID: {}", conversationId, e);
+        }
+    }
+}
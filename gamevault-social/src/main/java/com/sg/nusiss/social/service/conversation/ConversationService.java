@@ -40,6 +40,7 @@ public class ConversationService {
     private final MemberRepository memberRepository;
     private final UserService userService;
     private final FriendshipRepository friendshipRepository;
+    private final ConversationMembershipCache membershipCache;
 
     /**
      * Create a conversation
@@ -167,6 +168,8 @@ public class ConversationService {
             memberRepository.saveAll(activeMembers);
         }
 
+        membershipCache.invalidate(conversationId);
+
         log.info("群聊已解散 - ID: {}, 群主: {}, 影响成员数: {}",
                 conversationId, currentUserId, activeMembers.size());
     }
@@ -292,5 +295,45 @@ public class ConversationService {
 
             memberRepository.save(newMember);
         }
+
+        membershipCache.invalidate(conversationId);
+    }
+
+    /**
+     * 群主移除成员
+     */
+    @Transactional
+    public void removeMember(Long conversationId, Long userId, Long currentUserId) {
+        if (userId == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户ID不能为空");
+        }
+
+        // 验证群聊存在
+        Conversation conversation = conversationRepository.findById(conversationId)
+                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND_ERROR, "群聊不存在"));
+
+        if (!"active".equals(conversation.getStatus())) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "群聊已解散");
+        }
+
+        // 验证权限：只有群主可以移除成员，群主不能移除自己
+        if (!conversation.getOwnerId().equals(currentUserId)) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "只有群主可以移除成员");
+        }
+        if (conversation.getOwnerId().equals(userId)) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "群主不能移除自己");
+        }
+
+        Member member = memberRepository.findByConversationIdAndUserIdAndIsActive(conversationId, userId, true)
+                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND_ERROR, "该用户不是群成员"));
+
+        member.setIsActive(false);
+        member.setLeftAt(LocalDateTime.now());
+        member.setLeaveReason("被移除");
+        memberRepository.save(member);
+
+        membershipCache.invalidate(conversationId);
+
+        log.info("成员已移除 - 群聊ID: {}, 用户: {}, 操作者: {}", conversationId, userId, currentUserId);
     }
 }
@@ -0,0 +1,104 @@
+package com.sg.nusiss.social.service.message;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 消息ID分配
+ *
+ * 从 messages.id 的自增序列中一次取一段ID缓存在本节点，发送消息时不需要先插入数据库就能拿到消息ID。
+ * 与 JPA 保存的消息（IDENTITY）共用同一个序列，不会冲突；多个节点各自取段，
+ * 同一节点内的ID递增，不同节点之间不保证按时间顺序。
+ *
+ * 取到的段超过 id-block-ttl 未用完就丢弃剩余ID，因此一个ID从取出到被使用最多相隔 id-block-ttl，
+ * 后台保存每条消息最多 persist-deadline（见 {@link MessagePersistQueue}），
+ * 所以比当前序列值小的ID在 id-block-ttl + persist-deadline 之后不会再出现新消息（见 {@link #settledId()}）。
+ */
+@Slf4j
+@Component
+public class MessageIdAllocator {
+
+    private static final String NEXT_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence('messages', 'id')) FROM generate_series(1, ?)";
+    private static final String LAST_ID_SQL =
+            "SELECT pg_sequence_last_value(pg_get_serial_sequence('messages', 'id')::regclass)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int blockSize;
+    private final long blockTtlNanos;
+    private final long settleNanos;
+    private final long sampleIntervalNanos;
+
+    private List<Long> block = List.of();
+    private int next;
+    private long blockFetchedAt;
+
+    // 序列值采样：{采样时间(纳秒), 序列值}，从旧到新
+    private final Deque<long[]> samples = new ArrayDeque<>();
+
+    public MessageIdAllocator(JdbcTemplate jdbcTemplate,
+                              @Value("${social.message.pipeline.id-block-size:100}") int blockSize,
+                              @Value("${social.message.pipeline.id-block-ttl:5s}") Duration blockTtl,
+                              @Value("${social.message.pipeline.persist-deadline:40s}") Duration persistDeadline,
+                              @Value("${social.message.history.settle-window:60s}") Duration settleWindow) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("ID分段大小必须为正数");
+        }
+        if (settleWindow.compareTo(blockTtl.plus(persistDeadline)) <= 0) {
+            throw new IllegalArgumentException("settle-window 必须大于 id-block-ttl 加 persist-deadline");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.blockSize = blockSize;
+        this.blockTtlNanos = blockTtl.toNanos();
+        this.settleNanos = settleWindow.toNanos();
+        this.sampleIntervalNanos = settleNanos / 6;
+    }
+
+    /**
+     * 分配一个消息ID，本段用完或过期时从数据库取下一段
+     */
+    public synchronized long nextId() {
+        long now = System.nanoTime();
+        if (next >= block.size() || now - blockFetchedAt > blockTtlNanos) {
+            block = jdbcTemplate.queryForList(NEXT_IDS_SQL, Long.class, blockSize);
+            next = 0;
+            blockFetchedAt = now;
+            log.debug("取得消息ID段 - 起始: {}, 数量: {}", block.get(0), block.size());
+        }
+        return block.get(next++);
+    }
+
+    /**
+     * 已稳定的最大消息ID：不大于该值的ID不会再出现新的消息
+     *
+     * 取 settle-window 之前采样到的序列值：该ID最迟在采样后 id-block-ttl 内被使用，
+     * 再过 persist-deadline 要么已写入要么已按失败处理（不会再写入），
+     * 因此 settle-window 必须大于两者之和（启动时校验），所有节点使用相同配置。每隔 settle-window/6 最多查询一次序列；没有足够早的采样时返回 0。
+     */
+    public synchronized long settledId() {
+        long now = System.nanoTime();
+        if (samples.isEmpty() || now - samples.peekLast()[0] >= sampleIntervalNanos) {
+            Long last = jdbcTemplate.queryForObject(LAST_ID_SQL, Long.class);
+            samples.addLast(new long[]{now, last != null ? last : 0});
+        }
+        // 只保留最新的一个早于 settle-window 的采样
+        while (samples.size() > 1) {
+            Iterator<long[]> iterator = samples.iterator();
+            iterator.next();
+            if (now - iterator.next()[0] < settleNanos) {
+                break;
+            }
+            samples.removeFirst();
+        }
+        long[] oldest = samples.peekFirst();
+        return now - oldest[0] >= settleNanos ? oldest[1] : 0;
+    }
+}
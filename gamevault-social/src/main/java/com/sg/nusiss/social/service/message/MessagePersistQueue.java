@@ -0,0 +1,296 @@
+package com.sg.nusiss.social.service.message;
+
+import com.sg.nusiss.social.dto.message.response.MessageResponse;
+import com.sg.nusiss.social.entity.message.Message;
+import com.sg.nusiss.social.service.cache.MessageCacheService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息异步持久化队列
+ *
+ * 已广播的消息放入有界队列，由单个写线程批量写入 PostgreSQL：
+ * 队列中有多少条（不超过 batch-size）就一次写多少条，负载越高批次越大。
+ * 消息ID由 {@link MessageIdAllocator} 预先分配，插入使用 ON CONFLICT DO NOTHING，
+ * 写入失败整批重试（指数退避）不会产生重复行。重试用尽后调用消息的失败回调。
+ * 数据本身被拒绝（SQLState 22 数据异常 / 23 约束冲突）时重试没有意义，改为逐条写入，
+ * 只有出问题的那条消息失败，同批其他消息照常保存。
+ *
+ * 每条消息从接受到写入结束不超过 persist-deadline：每次尝试最多耗时 数据库连接等待 + attempt-timeout，
+ * 剩余时间不够一次尝试的消息不再写入，直接按失败处理。历史分段缓存依赖这个上限
+ * （见 {@link MessageIdAllocator#settledId()}），超过期限仍写入的消息可能不在已缓存的分段中。
+ * 写入成功后再放入 Redis 最近消息缓存，缓存中只有已保存的消息。
+ *
+ * 队列满时 {@link #offer} 返回 false，由调用方拒绝发送（背压）。
+ */
+@Slf4j
+@Component
+public class MessagePersistQueue {
+
+    private static final String INSERT_SQL = "INSERT INTO messages (id, conversation_id, sender_id, receiver_id, "
+            + "content, chat_type, message_type, file_id, file_name, file_size, file_type, file_ext, "
+            + "access_url, thumbnail_url, created_at, is_deleted) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+    private static final long IDLE_POLL_MS = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageCacheService messageCacheService;
+    private final BlockingQueue<PendingMessage> queue;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    // 消息接受后超过该时间不再开始新的写入尝试
+    private final long lastAttemptAgeNanos;
+    private final Timer persistLag;
+    private final Counter failedCounter;
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    public MessagePersistQueue(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               MessageCacheService messageCacheService,
+                               MeterRegistry meterRegistry,
+                               @Value("${social.message.pipeline.queue-capacity:10000}") int capacity,
+                               @Value("${social.message.pipeline.batch-size:200}") int batchSize,
+                               @Value("${social.message.pipeline.max-attempts:5}") int maxAttempts,
+                               @Value("${social.message.pipeline.retry-backoff-ms:100}") long retryBackoffMs,
+                               @Value("${social.message.pipeline.persist-deadline:40s}") Duration persistDeadline,
+                               @Value("${social.message.pipeline.attempt-timeout:5s}") Duration attemptTimeout,
+                               @Value("${spring.datasource.hikari.connection-timeout:30000}") long connectionTimeoutMs) {
+        if (capacity <= 0 || batchSize <= 0 || maxAttempts <= 0) {
+            throw new IllegalArgumentException("队列容量、批次大小和重试次数必须为正数");
+        }
+        if (attemptTimeout.toSeconds() <= 0) {
+            throw new IllegalArgumentException("attempt-timeout 至少为 1 秒");
+        }
+        Duration attemptBudget = attemptTimeout.plusMillis(connectionTimeoutMs);
+        if (persistDeadline.compareTo(attemptBudget) <= 0) {
+            throw new IllegalArgumentException("persist-deadline 必须大于数据库连接等待时间加 attempt-timeout");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // 事务超时同时作为语句超时，限制单次尝试的耗时
+        this.transactionTemplate.setTimeout((int) attemptTimeout.toSeconds());
+        this.lastAttemptAgeNanos = persistDeadline.minus(attemptBudget).toNanos();
+        this.messageCacheService = messageCacheService;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMs = retryBackoffMs;
+        this.persistLag = Timer.builder("social.chat.persist.lag")
+                .description("消息从接受到写入数据库的延迟")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("social.chat.persist.failed")
+                .description("未能保存的消息数（重试用尽、超过保存期限或数据被拒绝）")
+                .register(meterRegistry);
+        Gauge.builder("social.chat.persist.queue.size", queue, BlockingQueue::size)
+                .description("等待写入数据库的消息数")
+                .register(meterRegistry);
+
+        this.writer = new Thread(this::runWriter, "chat-message-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * 放入队列，队列已满或正在停止时返回 false
+     */
+    public boolean offer(PendingMessage pending) {
+        return running && queue.offer(pending);
+    }
+
+    /**
+     * 停止时先写完队列中剩余的消息
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.error("停止时仍有 {} 条消息未保存", queue.size());
+        }
+    }
+
+    private void runWriter() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                // 只在停止时被中断，继续写完剩余消息
+                running = false;
+            } catch (Exception e) {
+                log.error("消息写线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingMessage> batch) throws InterruptedException {
+        List<PendingMessage> written = insertWithRetry(batch);
+        if (written.isEmpty()) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        List<MessageResponse> saved = new ArrayList<>(written.size());
+        for (PendingMessage pending : written) {
+            persistLag.record(now - pending.acceptedNanos(), TimeUnit.NANOSECONDS);
+            saved.add(pending.response());
+        }
+        messageCacheService.cacheMessages(saved);
+        log.debug("批量保存消息 - 数量: {}", written.size());
+    }
+
+    /**
+     * 在一个事务中写入，失败时按错误类型重试或逐条写入
+     * @return 已保存的消息（其余的已调用失败回调）
+     */
+    private List<PendingMessage> insertWithRetry(List<PendingMessage> messages) throws InterruptedException {
+        List<PendingMessage> live = messages;
+        for (int attempt = 1; ; attempt++) {
+            List<PendingMessage> batch = dropExpired(live);
+            live = batch;
+            if (batch.isEmpty()) {
+                return List.of();
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(batch));
+                return batch;
+            } catch (Exception e) {
+                if (isRejectedData(e)) {
+                    if (batch.size() == 1) {
+                        log.error("消息数据被数据库拒绝，不再重试 - 消息ID: {}", batch.get(0).message().getId(), e);
+                        fail(batch);
+                        return List.of();
+                    }
+                    log.warn("批量保存消息被数据库拒绝，改为逐条写入 - 数量: {}, 错误: {}", batch.size(), e.getMessage());
+                    List<PendingMessage> saved = new ArrayList<>(batch.size());
+                    for (PendingMessage pending : batch) {
+                        saved.addAll(insertWithRetry(List.of(pending)));
+                    }
+                    return saved;
+                }
+                if (attempt >= maxAttempts) {
+                    log.error("批量保存消息失败，已重试 {} 次 - 数量: {}, 首条消息ID: {}",
+                            attempt, batch.size(), batch.get(0).message().getId(), e);
+                    fail(batch);
+                    return List.of();
+                }
+                long backoff = retryBackoffMs << (attempt - 1);
+                log.warn("批量保存消息失败，{}ms 后第 {} 次重试 - 数量: {}, 错误: {}",
+                        backoff, attempt + 1, batch.size(), e.getMessage());
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * 剩余时间不够再尝试一次的消息按失败处理，返回其余消息
+     */
+    private List<PendingMessage> dropExpired(List<PendingMessage> batch) {
+        long now = System.nanoTime();
+        List<PendingMessage> live = new ArrayList<>(batch.size());
+        List<PendingMessage> expired = new ArrayList<>();
+        for (PendingMessage pending : batch) {
+            (now - pending.acceptedNanos() > lastAttemptAgeNanos ? expired : live).add(pending);
+        }
+        if (!expired.isEmpty()) {
+            log.error("消息超过保存期限仍未写入，不再重试 - 数量: {}, 首条消息ID: {}",
+                    expired.size(), expired.get(0).message().getId());
+            fail(expired);
+        }
+        return live;
+    }
+
+    private void fail(List<PendingMessage> batch) {
+        failedCounter.increment(batch.size());
+        batch.forEach(PendingMessage::fail);
+    }
+
+    /**
+     * 是否为数据本身的问题（SQLState 22 数据异常、23 约束冲突），这类错误重试也不会成功
+     */
+    static boolean isRejectedData(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                for (SQLException e = sqlException; e != null; e = e.getNextException()) {
+                    String state = e.getSQLState();
+                    if (state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void insert(List<PendingMessage> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, pending) -> {
+            Message m = pending.message();
+            ps.setLong(1, m.getId());
+            ps.setObject(2, m.getConversationId());
+            ps.setLong(3, m.getSenderId());
+            ps.setObject(4, m.getReceiverId());
+            ps.setString(5, m.getContent());
+            ps.setString(6, m.getChatType());
+            ps.setString(7, m.getMessageType());
+            ps.setString(8, m.getFileId());
+            ps.setString(9, m.getFileName());
+            ps.setObject(10, m.getFileSize());
+            ps.setString(11, m.getFileType());
+            ps.setString(12, m.getFileExt());
+            ps.setString(13, m.getAccessUrl());
+            ps.setString(14, m.getThumbnailUrl());
+            ps.setTimestamp(15, Timestamp.valueOf(m.getCreatedAt()));
+            ps.setBoolean(16, Boolean.TRUE.equals(m.getIsDeleted()));
+        });
+    }
+
+    /**
+     * 待保存的消息：实体（已分配ID）、已广播的响应、接受时间和重试用尽后的回调
+     */
+    public record PendingMessage(Message message, MessageResponse response, long acceptedNanos,
+                                 Runnable onFailure) {
+
+        void fail() {
+            try {
+                onFailure.run();
+            } catch (Exception e) {
+                log.warn("消息保存失败回调异常 - 消息ID: {}", message.getId(), e);
+            }
+        }
+    }
+}
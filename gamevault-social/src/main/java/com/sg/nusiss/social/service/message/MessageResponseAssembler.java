@@ -0,0 +1,94 @@
+package com.sg.nusiss.social.service.message;
+
+import com.sg.nusiss.common.domain.ErrorCode;
+import com.sg.nusiss.common.dto.UserDTO;
+import com.sg.nusiss.common.exception.BusinessException;
+import com.sg.nusiss.social.dto.message.response.MessageResponse;
+import com.sg.nusiss.social.entity.message.Message;
+import com.sg.nusiss.social.service.user.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 消息实体 → 响应对象（群聊和私聊共用）
+ * 批量转换时一次性解析所有发送者
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageResponseAssembler {
+
+    public static final String CHAT_TYPE_GROUP = "group";
+    public static final String CHAT_TYPE_PRIVATE = "private";
+
+    private final UserService userService;
+
+    /**
+     * 转换单条消息（查询发送者）
+     */
+    public MessageResponse toResponse(Message message, String chatType) {
+        return toResponse(message, userService.getUserById(message.getSenderId()), chatType);
+    }
+
+    /**
+     * 批量转换：先一次性解析所有发送者，senders 中已有的用户不再查询（同一请求内复用）
+     */
+    public List<MessageResponse> toResponses(List<Message> messages, Map<Long, UserDTO> senders, String chatType) {
+        Set<Long> missing = messages.stream()
+                .map(Message::getSenderId)
+                .filter(senderId -> !senders.containsKey(senderId))
+                .collect(Collectors.toSet());
+        if (!missing.isEmpty()) {
+            senders.putAll(userService.getUserMap(missing));
+        }
+        return messages.stream()
+                .map(message -> toResponse(message, senders.get(message.getSenderId()), chatType))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 转换为响应对象（包含文件附件）
+     */
+    public MessageResponse toResponse(Message message, UserDTO sender, String chatType) {
+        if (sender == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "发送者不存在");
+        }
+
+        MessageResponse.MessageResponseBuilder responseBuilder = MessageResponse.builder()
+                .id(message.getId())
+                .conversationId(message.getConversationId())
+                .senderId(message.getSenderId())
+                .receiverId(message.getReceiverId())
+                .senderUsername(sender.getUsername())
+                .senderEmail(sender.getEmail())
+                .content(message.getContent())
+                .messageType(message.getMessageType())
+                .chatType(chatType)
+                .createdAt(message.getCreatedAt());
+
+        // 如果是文件消息，添加附件信息
+        if ("file".equals(message.getMessageType()) && message.getFileId() != null) {
+            MessageResponse.FileAttachment attachment = MessageResponse.FileAttachment.builder()
+                    .fileId(message.getFileId())
+                    .fileName(message.getFileName())
+                    .fileSize(message.getFileSize())
+                    .fileType(message.getFileType())
+                    .fileExt(message.getFileExt())
+                    .accessUrl(message.getAccessUrl())
+                    .thumbnailUrl(message.getThumbnailUrl())
+                    .build();
+
+            responseBuilder.attachment(attachment);
+            log.debug("构建文件附件 - fileId: {}, fileName: {}, accessUrl: {}",
+                    message.getFileId(), message.getFileName(), message.getAccessUrl());
+        }
+
+        return responseBuilder.build();
+    }
+}
@@ -0,0 +1,200 @@
+package com.sg.nusiss.social.service.message;
+
+import com.sg.nusiss.common.domain.ErrorCode;
+import com.sg.nusiss.common.exception.BusinessException;
+import com.sg.nusiss.social.dto.message.request.SendMessageRequest;
+import com.sg.nusiss.social.dto.message.response.MessageResponse;
+import com.sg.nusiss.social.dto.websocket.ChatMessageDto;
+import com.sg.nusiss.social.dto.websocket.SendAckDto;
+import com.sg.nusiss.social.entity.message.Message;
+import com.sg.nusiss.social.service.broker.ChatBroker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 群聊消息发送流水线（WebSocket）
+ *
+ * 入站线程上只做：成员校验（成员缓存）、字段校验、分配消息ID、查询发送者（用户信息本地缓存，
+ * 未命中时才读 Redis / Auth 服务）、广播、放入持久化队列、回执，
+ * 数据库写入和 Redis 缓存由 {@link MessagePersistQueue} 在后台批量完成。
+ * 发送者通过 /user/queue/ack 收到回执（accepted / rejected / failed）。
+ * 已广播的消息最终未能保存时，除了给发送者的 failed 回执，还在群聊主题上广播撤回帧（event=retracted），
+ * 其他成员据此移除该消息，不会一直显示一条数据库中不存在的消息。
+ *
+ * social.message.pipeline.enabled=false 时控制器回到同步发送（先保存再广播），
+ * 两种方式的发送耗时都记录在 social.chat.send.latency（标签 mode=pipeline|sync）。
+ */
+@Slf4j
+@Service
+public class MessageSendPipeline {
+
+    public static final String ACK_DESTINATION = "/queue/ack";
+    public static final String EVENT_RETRACTED = "retracted";
+
+    private final MessageService messageService;
+    private final MessageIdAllocator idAllocator;
+    private final MessagePersistQueue persistQueue;
+    private final ChatBroker chatBroker;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final boolean enabled;
+    private final Timer pipelineLatency;
+    private final Timer syncLatency;
+
+    public MessageSendPipeline(MessageService messageService,
+                               MessageIdAllocator idAllocator,
+                               MessagePersistQueue persistQueue,
+                               ChatBroker chatBroker,
+                               SimpMessagingTemplate messagingTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${social.message.pipeline.enabled:true}") boolean enabled) {
+        this.messageService = messageService;
+        this.idAllocator = idAllocator;
+        this.persistQueue = persistQueue;
+        this.chatBroker = chatBroker;
+        this.messagingTemplate = messagingTemplate;
+        this.enabled = enabled;
+        this.pipelineLatency = sendLatency(meterRegistry, "pipeline");
+        this.syncLatency = sendLatency(meterRegistry, "sync");
+    }
+
+    private static Timer sendLatency(MeterRegistry meterRegistry, String mode) {
+        return Timer.builder("social.chat.send.latency")
+                .description("收到消息到广播完成的耗时")
+                .tag("mode", mode)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 发送群聊消息：校验通过后立即广播，持久化在后台进行
+     * @param principalName 发送者的会话用户名（用于推送回执）
+     */
+    public void send(SendMessageRequest request, Long senderId, String principalName) {
+        long started = System.nanoTime();
+        Long conversationId = request.getConversationId();
+        String clientMessageId = request.getClientMessageId();
+        try {
+            if (conversationId == null) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "群聊ID不能为空");
+            }
+            messageService.checkSendPermission(conversationId, senderId);
+            messageService.validateContent(request);
+
+            Message message = messageService.buildMessage(request, senderId);
+            message.setId(idAllocator.nextId());
+            MessageResponse response = messageService.convertToResponse(message);
+
+            String destination = "/topic/chat/" + conversationId;
+            MessagePersistQueue.PendingMessage pending = new MessagePersistQueue.PendingMessage(
+                    message, response, started,
+                    () -> {
+                        chatBroker.publish(destination, retraction(response, clientMessageId));
+                        sendAck(principalName, SendAckDto.builder()
+                                .clientMessageId(clientMessageId)
+                                .messageId(message.getId())
+                                .conversationId(conversationId)
+                                .status("failed")
+                                .reason("消息保存失败")
+                                .build());
+                    });
+            if (!persistQueue.offer(pending)) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "服务繁忙，请稍后重试");
+            }
+
+            chatBroker.publish(destination, toChatMessage(response, clientMessageId));
+            sendAck(principalName, SendAckDto.builder()
+                    .clientMessageId(clientMessageId)
+                    .messageId(message.getId())
+                    .conversationId(conversationId)
+                    .status("accepted")
+                    .build());
+            pipelineLatency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+            log.debug("消息已广播并进入保存队列 - 群聊ID: {}, 消息ID: {}", conversationId, message.getId());
+        } catch (BusinessException e) {
+            log.info("拒绝发送消息 - 群聊ID: {}, 发送者: {}, 原因: {}", conversationId, senderId, e.getMessage());
+            sendAck(principalName, rejected(request, e.getMessage()));
+        } catch (Exception e) {
+            log.error("处理 WebSocket 消息失败 - 群聊ID: {}, 发送者: {}", conversationId, senderId, e);
+            sendAck(principalName, rejected(request, "消息发送失败"));
+        }
+    }
+
+    /**
+     * 记录同步发送的耗时（对照）
+     */
+    public void recordSyncLatency(long startedNanos) {
+        syncLatency.record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void sendAck(String principalName, SendAckDto ack) {
+        if (principalName == null) {
+            return;
+        }
+        try {
+            messagingTemplate.convertAndSendToUser(principalName, ACK_DESTINATION, ack);
+        } catch (Exception e) {
+            log.warn("发送回执失败 - 用户: {}, 错误: {}", principalName, e.getMessage());
+        }
+    }
+
+    public static SendAckDto rejected(SendMessageRequest request, String reason) {
+        return SendAckDto.builder()
+                .clientMessageId(request.getClientMessageId())
+                .conversationId(request.getConversationId())
+                .status("rejected")
+                .reason(reason)
+                .build();
+    }
+
+    /**
+     * 撤回帧：已广播的消息未能保存
+     */
+    public static ChatMessageDto retraction(MessageResponse response, String clientMessageId) {
+        return ChatMessageDto.builder()
+                .id(response.getId())
+                .conversationId(response.getConversationId())
+                .senderId(response.getSenderId())
+                .clientMessageId(clientMessageId)
+                .event(EVENT_RETRACTED)
+                .build();
+    }
+
+    public static ChatMessageDto toChatMessage(MessageResponse response, String clientMessageId) {
+        ChatMessageDto.ChatMessageDtoBuilder builder = ChatMessageDto.builder()
+                .id(response.getId())
+                .conversationId(response.getConversationId())
+                .senderId(response.getSenderId())
+                .senderUsername(response.getSenderUsername())
+                .senderEmail(response.getSenderEmail())
+                .content(response.getContent())
+                .messageType(response.getMessageType())
+                .timestamp(response.getCreatedAt())
+                .clientMessageId(clientMessageId);
+
+        if (response.getAttachment() != null) {
+            builder.attachment(
+                    ChatMessageDto.FileAttachment.builder()
+                            .fileId(response.getAttachment().getFileId())
+                            .fileName(response.getAttachment().getFileName())
+                            .fileSize(response.getAttachment().getFileSize())
+                            .fileType(response.getAttachment().getFileType())
+                            .fileExt(response.getAttachment().getFileExt())
+                            .accessUrl(response.getAttachment().getAccessUrl())
+                            .thumbnailUrl(response.getAttachment().getThumbnailUrl())
+                            .build()
+            );
+        }
+        return builder.build();
+    }
+}
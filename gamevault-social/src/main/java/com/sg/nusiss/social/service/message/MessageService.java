@@ -5,13 +5,11 @@ import com.sg.nusiss.common.dto.UserDTO;
 import com.sg.nusiss.common.exception.BusinessException;
 import com.sg.nusiss.social.dto.message.request.SendMessageRequest;
 import com.sg.nusiss.social.dto.message.response.MessageResponse;
-import com.sg.nusiss.social.entity.conversation.Conversation;
 import com.sg.nusiss.social.entity.message.Message;
-import com.sg.nusiss.social.repository.conversation.ConversationRepository;
-import com.sg.nusiss.social.repository.conversation.MemberRepository;
 import com.sg.nusiss.social.repository.message.MessageRepository;
-import com.sg.nusiss.social.service.user.UserService;
+import com.sg.nusiss.social.service.conversation.ConversationMembershipCache;
 import com.sg.nusiss.social.service.cache.MessageCacheService;
+import com.sg.nusiss.social.service.cache.MessageHistoryCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -21,8 +19,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Service
 @Slf4j
@@ -30,37 +31,87 @@ import java.util.stream.Collectors;
 public class MessageService {
 
     private final MessageRepository messageRepository;
-    private final ConversationRepository conversationRepository;
-    private final MemberRepository memberRepository;
+    private final ConversationMembershipCache membershipCache;
     private final MessageCacheService messageCacheService;
-    private final UserService userService;
+    private final MessageResponseAssembler responseAssembler;
+    private final MessageHistoryCache historyCache;
+    private final MessageIdAllocator idAllocator;
 
     /**
      * 发送消息（同步到 MySQL + Redis）
      */
     @Transactional
     public MessageResponse sendMessage(SendMessageRequest request, Long senderId) {
-        // 1. 验证群聊存在
-        Conversation conversation = conversationRepository.findById(request.getConversationId())
-                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND_ERROR, "群聊不存在"));
+        checkSendPermission(request.getConversationId(), senderId);
+        validateContent(request);
 
-        // 2. 检查群聊是否已解散
-        if ("dissolved".equals(conversation.getStatus())) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "群聊已解散，无法发送消息");
-        }
+        Message message = messageRepository.save(buildMessage(request, senderId));
+
+        // 转换为响应对象
+        MessageResponse response = convertToResponse(message);
+
+        log.info("转换后的响应 - messageType: {}, hasAttachment: {}, attachment: {}",
+                response.getMessageType(),
+                response.getAttachment() != null,
+                response.getAttachment());
 
-        // 3. 验证发送者是群成员
-        memberRepository.findByConversationIdAndUserIdAndIsActive(
-                request.getConversationId(), senderId, true
-        ).orElseThrow(() -> new BusinessException(ErrorCode.NO_AUTH_ERROR, "您不在该群聊中"));
+        // 缓存到 Redis
+        messageCacheService.cacheMessage(response);
+
+        log.info("消息已发送并同步 - 群聊ID: {}, 发送者: {}, 消息ID: {}, 类型: {}",
+                request.getConversationId(), senderId, message.getId(), message.getMessageType());
+
+        return response;
+    }
+
+    /**
+     * 验证群聊存在、未解散，且发送者是活跃成员（成员缓存）
+     */
+    public void checkSendPermission(Long conversationId, Long senderId) {
+        membershipCache.checkCanSend(conversationId, senderId);
+    }
 
-        // 4. 验证消息内容（文件消息可以没有文本内容）
+    /**
+     * 验证消息内容（文件消息可以没有文本内容），以及各字段不超过 messages 表的列长度
+     * 异步保存时被数据库拒绝的消息已经广播出去，所以要在广播之前拦下
+     */
+    void validateContent(SendMessageRequest request) {
         if ("text".equals(request.getMessageType()) &&
                 (request.getContent() == null || request.getContent().trim().isEmpty())) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "消息内容不能为空");
         }
+        checkColumn(request.getContent(), Integer.MAX_VALUE, "消息内容");
+        checkColumn(request.getMessageType(), 20, "消息类型");
+        // 只有文件消息会保存文件字段（见 buildMessage）
+        if ("file".equals(request.getMessageType()) && request.getFileId() != null) {
+            checkColumn(request.getFileId(), 64, "文件ID");
+            checkColumn(request.getFileName(), 255, "文件名");
+            checkColumn(request.getFileType(), 20, "文件类型");
+            checkColumn(request.getFileExt(), 20, "文件扩展名");
+            checkColumn(request.getAccessUrl(), 1000, "文件地址");
+            checkColumn(request.getThumbnailUrl(), 1000, "缩略图地址");
+        }
+    }
 
-        // 构建消息实体
+    /**
+     * 字段长度（按字符数，与 varchar(n) 一致）不超过 maxLength，且不含 PostgreSQL 文本不允许的 \0
+     */
+    private static void checkColumn(String value, int maxLength, String field) {
+        if (value == null) {
+            return;
+        }
+        if (value.codePointCount(0, value.length()) > maxLength) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, field + "不能超过" + maxLength + "个字符");
+        }
+        if (value.indexOf('\0') >= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, field + "包含非法字符");
+        }
+    }
+
+    /**
+     * 构建消息实体（不保存）
+     */
+    Message buildMessage(SendMessageRequest request, Long senderId) {
         Message.MessageBuilder messageBuilder = Message.builder()
                 .conversationId(request.getConversationId())
                 .senderId(senderId)
@@ -82,37 +133,14 @@ public class MessageService {
 
             log.info("保存文件消息 - fileId: {}, fileName: {}", request.getFileId(), request.getFileName());
         }
-
-        Message message = messageRepository.save(messageBuilder.build());
-
-        // 转换为响应对象
-        MessageResponse response = convertToResponse(message);
-
-        log.info("转换后的响应 - messageType: {}, hasAttachment: {}, attachment: {}",
-                response.getMessageType(),
-                response.getAttachment() != null,
-                response.getAttachment());
-
-        // 缓存到 Redis
-        messageCacheService.cacheMessage(response);
-
-        log.info("消息已发送并同步 - 群聊ID: {}, 发送者: {}, 消息ID: {}, 类型: {}",
-                request.getConversationId(), senderId, message.getId(), message.getMessageType());
-
-        return response;
+        return messageBuilder.build();
     }
 
     /**
      * 获取群聊历史消息（优先从 Redis 读取）
      */
     public List<MessageResponse> getMessages(Long conversationId, Long currentUserId, int page, int size) {
-        // 1. 验证群聊存在
-        conversationRepository.findById(conversationId)
-                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND_ERROR, "群聊不存在"));
-
-        // 2. 验证用户是群成员
-        memberRepository.findByConversationIdAndUserIdAndIsActive(conversationId, currentUserId, true)
-                .orElseThrow(() -> new BusinessException(ErrorCode.NO_AUTH_ERROR, "您不在该群聊中"));
+        checkReadPermission(conversationId, currentUserId);
 
         // 3. 第一页优先从 Redis 读取
         if (page == 0) {
@@ -128,12 +156,10 @@ public class MessageService {
         Pageable pageable = PageRequest.of(page, size);
         Page<Message> messagePage = messageRepository.findByConversationId(conversationId, pageable);
 
-        List<MessageResponse> messages = messagePage.getContent().stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        List<MessageResponse> messages = convertToResponses(messagePage.getContent(), new HashMap<>());
 
         // 反转顺序（从旧到新）
-        java.util.Collections.reverse(messages);
+        Collections.reverse(messages);
 
         // 5. 第一页数据缓存到 Redis
         if (page == 0 && !messages.isEmpty()) {
@@ -145,43 +171,105 @@ public class MessageService {
     }
 
     /**
-     * 转换为响应对象（包含文件附件）
+     * 获取某条消息之前的历史消息（向上翻页，从旧到新），优先读取历史分段缓存
+     *
+     * 从 beforeMessageId 向更早的方向逐段读取：已缓存的分段直接读 Redis，
+     * 未缓存的部分按ID范围从数据库读取一段（不越过下方已缓存分段的上界），范围内已稳定时写入缓存。
      */
-    private MessageResponse convertToResponse(Message message) {
-        UserDTO sender = userService.getUserById(message.getSenderId());
-        if (sender == null) {
-            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "发送者不存在");
+    public List<MessageResponse> getMessagesBefore(Long conversationId, Long currentUserId,
+                                                   Long beforeMessageId, int size) {
+        if (beforeMessageId == null || beforeMessageId <= 0 || size <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "分页参数错误");
         }
+        checkReadPermission(conversationId, currentUserId);
+
+        int segmentSize = historyCache.getSegmentSize();
+        long settledId = idAllocator.settledId();
+        // 从新到旧
+        List<MessageResponse> result = new ArrayList<>(size);
+        // 本次请求内已解析的发送者
+        Map<Long, UserDTO> senders = new HashMap<>();
+        long cursor = beforeMessageId;
+        int cachedSegments = 0;
+        int loadedSegments = 0;
+
+        while (result.size() < size && cursor > 0) {
+            MessageHistoryCache.Segment segment = historyCache.findCovering(conversationId, cursor).orElse(null);
+            List<MessageResponse> messages = segment != null
+                    ? historyCache.read(conversationId, segment)
+                    : List.of();
+
+            if (!messages.isEmpty()) {
+                cachedSegments++;
+            } else {
+                long floor = historyCache.floorBelow(conversationId, cursor);
+                // 查数据库之前取删除版本，期间有删除时不写入
+                long version = historyCache.currentVersion(conversationId);
+                List<Message> rows = messageRepository.findHistorySegment(
+                        conversationId, floor, cursor, PageRequest.of(0, segmentSize));
+                loadedSegments++;
+                if (rows.isEmpty()) {
+                    cursor = floor;
+                    continue;
+                }
+                // 取满一段时下界为最早一条，否则该范围一直到 floor 都已读完
+                long lo = rows.size() == segmentSize ? rows.get(rows.size() - 1).getId() : floor;
+                segment = new MessageHistoryCache.Segment(lo, cursor);
+                messages = convertToResponses(rows, senders);
+                Collections.reverse(messages);
+                if (cursor - 1 <= settledId) {
+                    historyCache.store(conversationId, version, segment, messages);
+                }
+            }
 
-        MessageResponse.MessageResponseBuilder responseBuilder = MessageResponse.builder()
-                .id(message.getId())
-                .conversationId(message.getConversationId())
-                .senderId(message.getSenderId())
-                .receiverId(message.getReceiverId())
-                .senderUsername(sender != null ? sender.getUsername() : "未知用户")
-                .senderEmail(sender != null ? sender.getEmail() : "")
-                .content(message.getContent())
-                .messageType(message.getMessageType())
-                .chatType("group")
-                .createdAt(message.getCreatedAt());
-
-        // 如果是文件消息，添加附件信息
-        if ("file".equals(message.getMessageType()) && message.getFileId() != null) {
-            MessageResponse.FileAttachment attachment = MessageResponse.FileAttachment.builder()
-                    .fileId(message.getFileId())
-                    .fileName(message.getFileName())
-                    .fileSize(message.getFileSize())
-                    .fileType(message.getFileType())
-                    .fileExt(message.getFileExt())
-                    .accessUrl(message.getAccessUrl())
-                    .thumbnailUrl(message.getThumbnailUrl())
-                    .build();
-
-            responseBuilder.attachment(attachment);
-            log.info("构建文件附件 - fileId: {}, fileName: {}, accessUrl: {}",
-                    message.getFileId(), message.getFileName(), message.getAccessUrl());
+            for (int i = messages.size() - 1; i >= 0 && result.size() < size; i--) {
+                MessageResponse message = messages.get(i);
+                if (message.getId() < cursor) {
+                    result.add(message);
+                }
+            }
+            cursor = segment.lo();
         }
 
-        return responseBuilder.build();
+        Collections.reverse(result);
+        log.info("返回历史消息 - 群聊ID: {}, beforeMessageId: {}, 数量: {}, 缓存分段: {}, 数据库分段: {}",
+                conversationId, beforeMessageId, result.size(), cachedSegments, loadedSegments);
+        return result;
+    }
+
+    /**
+     * 删除自己发送的群聊消息（逻辑删除），并使包含它的缓存失效
+     */
+    @Transactional
+    public void deleteMessage(Long conversationId, Long messageId, Long currentUserId) {
+        Message message = messageRepository.findById(messageId)
+                .filter(m -> conversationId.equals(m.getConversationId()) && !Boolean.TRUE.equals(m.getIsDeleted()))
+                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND_ERROR, "消息不存在"));
+        if (!message.getSenderId().equals(currentUserId)) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "只能删除自己发送的消息");
+        }
+
+        message.setIsDeleted(true);
+        messageRepository.save(message);
+
+        historyCache.evict(conversationId, messageId);
+        messageCacheService.clearCache(conversationId);
+
+        log.info("消息已删除 - 群聊ID: {}, 消息ID: {}, 操作者: {}", conversationId, messageId, currentUserId);
+    }
+
+    private void checkReadPermission(Long conversationId, Long currentUserId) {
+        membershipCache.checkCanRead(conversationId, currentUserId);
+    }
+
+    /**
+     * 转换为响应对象（查询发送者）
+     */
+    MessageResponse convertToResponse(Message message) {
+        return responseAssembler.toResponse(message, MessageResponseAssembler.CHAT_TYPE_GROUP);
+    }
+
+    private List<MessageResponse> convertToResponses(List<Message> messages, Map<Long, UserDTO> senders) {
+        return responseAssembler.toResponses(messages, senders, MessageResponseAssembler.CHAT_TYPE_GROUP);
     }
-}
\ No newline at end of file
+}
@@ -19,8 +19,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Service
 @Slf4j
@@ -30,6 +31,7 @@ public class PrivateMessageService {
     private final UserService userService;
     private final MessageRepository messageRepository;
     private final FriendshipRepository friendshipRepository;
+    private final MessageResponseAssembler responseAssembler;
 
     /**
      * 发送私聊消息
@@ -96,9 +98,7 @@ public class PrivateMessageService {
         Pageable pageable = PageRequest.of(page, size);
         Page<Message> messagePage = messageRepository.findPrivateMessages(userId, friendId, pageable);
 
-        List<MessageResponse> messages = messagePage.getContent().stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        List<MessageResponse> messages = convertToResponses(messagePage.getContent(), new HashMap<>());
 
         // 反转顺序（从旧到新）
         java.util.Collections.reverse(messages);
@@ -107,42 +107,11 @@ public class PrivateMessageService {
         return messages;
     }
 
-    /**
-     * 转换为响应对象（包含文件附件）
-     */
     private MessageResponse convertToResponse(Message message) {
-        UserDTO sender = userService.getUserById(message.getSenderId());
-        if (sender == null) {
-            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "接收者不存在");
-        }
-
-        MessageResponse.MessageResponseBuilder responseBuilder = MessageResponse.builder()
-                .id(message.getId())
-                .conversationId(message.getConversationId())
-                .senderId(message.getSenderId())
-                .receiverId(message.getReceiverId())
-                .senderUsername(sender != null ? sender.getUsername() : "未知用户")
-                .senderEmail(sender != null ? sender.getEmail() : "")
-                .content(message.getContent())
-                .messageType(message.getMessageType())
-                .chatType("private")
-                .createdAt(message.getCreatedAt());
-
-        // 如果是文件消息，添加附件信息
-        if ("file".equals(message.getMessageType()) && message.getFileId() != null) {
-            MessageResponse.FileAttachment attachment = MessageResponse.FileAttachment.builder()
-                    .fileId(message.getFileId())
-                    .fileName(message.getFileName())
-                    .fileSize(message.getFileSize())
-                    .fileType(message.getFileType())
-                    .fileExt(message.getFileExt())
-                    .accessUrl(message.getAccessUrl())
-                    .thumbnailUrl(message.getThumbnailUrl())
-                    .build();
-
-            responseBuilder.attachment(attachment);
-        }
+        return responseAssembler.toResponse(message, MessageResponseAssembler.CHAT_TYPE_PRIVATE);
+    }
 
-        return responseBuilder.build();
+    private List<MessageResponse> convertToResponses(List<Message> messages, Map<Long, UserDTO> senders) {
+        return responseAssembler.toResponses(messages, senders, MessageResponseAssembler.CHAT_TYPE_PRIVATE);
     }
-}
\ No newline at end of file
+}
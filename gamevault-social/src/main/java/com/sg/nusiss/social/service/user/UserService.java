@@ -1,35 +1,142 @@
 package com.sg.nusiss.social.service.user;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.sg.nusiss.common.dto.UserDTO;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+/**
+ * 用户信息查询（三级）
+ * L1: 进程内 Caffeine 缓存，保存不可变的用户快照，每次返回新的 UserDTO；超过 refresh-after 后
+ *     下一次访问在后台刷新（先返回旧值），超过 ttl 未刷新则过期
+ * L2: Redis 缓存 user:{id}（1 小时），多节点共享
+ * 源: Auth 服务
+ *
+ * clearUserCache 删除 L2 并通过 Redis pub/sub 通知所有节点（包括本节点）失效 L1。
+ * L1 命中率见 cache.* 指标（cache=social.user），L1 未命中后的来源见 social.user.cache.loads（source=l2|origin|none）。
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
-public class UserService {
+public class UserService implements MessageListener {
 
     private final RestTemplate restTemplate;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LoadingCache<Long, CachedUser> localCache;
+    private final String invalidationChannel;
+    private final Counter l2Loads;
+    private final Counter originLoads;
+    private final Counter notFoundLoads;
 
     private static final String AUTH_SERVICE_URL = "http://gamevault-auth";
     private static final String CACHE_PREFIX = "user:";
     private static final long CACHE_EXPIRE_HOURS = 1;
 
+    public UserService(RestTemplate restTemplate,
+                       RedisTemplate<String, Object> redisTemplate,
+                       StringRedisTemplate stringRedisTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${social.user-cache.max-size:10000}") long maxSize,
+                       @Value("${social.user-cache.ttl-seconds:600}") long ttlSeconds,
+                       @Value("${social.user-cache.refresh-after-seconds:300}") long refreshAfterSeconds,
+                       @Value("${social.user-cache.invalidation-channel:user:invalidate}") String invalidationChannel) {
+        if (refreshAfterSeconds >= ttlSeconds) {
+            throw new IllegalArgumentException("refresh-after-seconds 必须小于 ttl-seconds");
+        }
+        this.restTemplate = restTemplate;
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.invalidationChannel = invalidationChannel;
+
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .refreshAfterWrite(refreshAfterSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build(new CacheLoader<Long, CachedUser>() {
+                    @Override
+                    public CachedUser load(Long userId) {
+                        return CachedUser.of(loadUser(userId));
+                    }
+
+                    @Override
+                    public Map<Long, CachedUser> loadAll(Set<? extends Long> userIds) {
+                        Map<Long, CachedUser> loaded = new HashMap<>();
+                        loadUsers(userIds).forEach((id, user) -> loaded.put(id, CachedUser.of(user)));
+                        return loaded;
+                    }
+                });
+
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "social.user");
+        this.l2Loads = loadCounter(meterRegistry, "l2");
+        this.originLoads = loadCounter(meterRegistry, "origin");
+        this.notFoundLoads = loadCounter(meterRegistry, "none");
+        log.info("用户信息本地缓存初始化 - 最大条数: {}, TTL: {}s, 后台刷新: {}s",
+                maxSize, ttlSeconds, refreshAfterSeconds);
+    }
+
+    private static Counter loadCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("social.user.cache.loads")
+                .description("本地缓存未命中时用户信息的来源")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    /**
+     * L1 中保存的用户快照（不可变）
+     */
+    record CachedUser(Long userId, String username, String email, String avatarUrl) {
+
+        static CachedUser of(UserDTO user) {
+            return user == null ? null
+                    : new CachedUser(user.getUserId(), user.getUsername(), user.getEmail(), user.getAvatarUrl());
+        }
+
+        UserDTO toDto() {
+            return UserDTO.builder()
+                    .userId(userId)
+                    .username(username)
+                    .email(email)
+                    .avatarUrl(avatarUrl)
+                    .build();
+        }
+    }
+
+    public String getInvalidationChannel() {
+        return invalidationChannel;
+    }
+
     /**
      * 根据用户ID查询用户信息（带缓存）
      */
@@ -38,26 +145,51 @@ public class UserService {
             return null;
         }
 
+        CachedUser cached = localCache.get(userId);
+        if (cached != null) {
+            return cached.toDto();
+        }
+
+        // 返回默认值
+        return unknownUser(userId);
+    }
+
+    /**
+     * 批量查询用户信息（带缓存）：本地缓存未命中的用户一次 MGET 读 Redis，
+     * 仍未命中的一次批量调用 Auth 服务后写回 Redis
+     * 查不到的用户返回默认值，结果包含所有传入的ID
+     */
+    public Map<Long, UserDTO> getUserMap(Collection<Long> userIds) {
+        Map<Long, UserDTO> users = new HashMap<>();
+        if (userIds == null || userIds.isEmpty()) {
+            return users;
+        }
+
+        List<Long> ids = userIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        Map<Long, CachedUser> cached = localCache.getAll(ids);
+        for (Long id : ids) {
+            CachedUser user = cached.get(id);
+            users.put(id, user != null ? user.toDto() : unknownUser(id));
+        }
+        return users;
+    }
+
+    /**
+     * L1 未命中时加载单个用户：Redis -> Auth 服务，查不到返回 null（不进入 L1）
+     */
+    private UserDTO loadUser(Long userId) {
         // 1. 先查 Redis 缓存
         String cacheKey = CACHE_PREFIX + userId;
-        Object cached = redisTemplate.opsForValue().get(cacheKey);
-
-        if (cached != null) {
-            log.debug("从缓存获取用户信息: userId={}", userId);
-
-            // 处理 LinkedHashMap 的情况
-            try {
-                if (cached instanceof UserDTO) {
-                    return (UserDTO) cached;
-                } else if (cached instanceof Map) {
-                    // 使用 ObjectMapper 转换 Map 为 UserDTO
-                    return objectMapper.convertValue(cached, UserDTO.class);
-                }
-            } catch (Exception e) {
-                log.warn("缓存数据转换失败，将重新从 Auth 服务获取: userId={}", userId, e);
-                // 删除损坏的缓存
-                redisTemplate.delete(cacheKey);
+        try {
+            Object cached = redisTemplate.opsForValue().get(cacheKey);
+            UserDTO user = cached != null ? fromCache(cacheKey, cached) : null;
+            if (user != null) {
+                log.debug("从缓存获取用户信息: userId={}", userId);
+                l2Loads.increment();
+                return user;
             }
+        } catch (Exception e) {
+            log.error("读取用户缓存失败: userId={}", userId, e);
         }
 
         // 2. 调用 Auth 服务
@@ -78,18 +210,61 @@ public class UserService {
                 redisTemplate.opsForValue().set(cacheKey, user, CACHE_EXPIRE_HOURS, TimeUnit.HOURS);
 
                 log.debug("从 Auth 服务获取用户信息: userId={}", userId);
+                originLoads.increment();
                 return user;
             }
         } catch (Exception e) {
             log.error("调用 Auth 服务失败: userId={}", userId, e);
         }
 
-        // 返回默认值
-        return UserDTO.builder()
-                .userId(userId)
-                .username("未知用户")
-                .email("")
-                .build();
+        notFoundLoads.increment();
+        return null;
+    }
+
+    /**
+     * L1 未命中时批量加载：一次 MGET 读 Redis，未命中的一次批量调用 Auth 服务并写回 Redis
+     * 只返回查到的用户
+     */
+    private Map<Long, UserDTO> loadUsers(Collection<? extends Long> ids) {
+        Map<Long, UserDTO> users = new HashMap<>();
+        List<Long> idList = new ArrayList<>(ids);
+
+        // 1. 一次 MGET 读取缓存
+        List<String> cacheKeys = idList.stream().map(id -> CACHE_PREFIX + id).collect(Collectors.toList());
+        List<Long> missing = new ArrayList<>();
+        try {
+            List<Object> cached = redisTemplate.opsForValue().multiGet(cacheKeys);
+            for (int i = 0; i < idList.size(); i++) {
+                Object value = cached != null ? cached.get(i) : null;
+                UserDTO user = value != null ? fromCache(cacheKeys.get(i), value) : null;
+                if (user != null) {
+                    users.put(idList.get(i), user);
+                } else {
+                    missing.add(idList.get(i));
+                }
+            }
+        } catch (Exception e) {
+            log.error("批量读取用户缓存失败: userIds={}", idList, e);
+            missing = idList;
+        }
+        l2Loads.increment(users.size());
+
+        // 2. 未命中的一次批量调用 Auth 服务，并写回缓存
+        if (!missing.isEmpty()) {
+            List<UserDTO> loaded = getUsersByIds(missing);
+            int found = 0;
+            for (UserDTO user : loaded) {
+                if (user != null && user.getUserId() != null) {
+                    users.put(user.getUserId(), user);
+                    found++;
+                }
+            }
+            cacheUsers(loaded);
+            originLoads.increment(found);
+            notFoundLoads.increment(Math.max(0, missing.size() - found));
+            log.debug("批量获取用户信息 - 缓存命中: {}, Auth 服务: {}", idList.size() - missing.size(), found);
+        }
+        return users;
     }
 
     /**
@@ -145,10 +320,84 @@ public class UserService {
     }
 
     /**
-     * 清除用户缓存
+     * 解析缓存中的用户（可能是 UserDTO 或 LinkedHashMap），损坏的缓存会被删除并返回 null
+     */
+    private UserDTO fromCache(String cacheKey, Object cached) {
+        try {
+            if (cached instanceof UserDTO) {
+                return (UserDTO) cached;
+            } else if (cached instanceof Map) {
+                // 使用 ObjectMapper 转换 Map 为 UserDTO
+                return objectMapper.convertValue(cached, UserDTO.class);
+            }
+        } catch (Exception e) {
+            log.warn("缓存数据转换失败，将重新从 Auth 服务获取: key={}", cacheKey, e);
+            // 删除损坏的缓存
+            redisTemplate.delete(cacheKey);
+        }
+        return null;
+    }
+
+    /**
+     * 通过管道一次写入多个用户缓存
+     */
+    private void cacheUsers(List<UserDTO> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (UserDTO user : users) {
+                        if (user != null && user.getUserId() != null) {
+                            ops.opsForValue().set(CACHE_PREFIX + user.getUserId(), user,
+                                    CACHE_EXPIRE_HOURS, TimeUnit.HOURS);
+                        }
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.error("批量写入用户缓存失败", e);
+        }
+    }
+
+    private UserDTO unknownUser(Long userId) {
+        return UserDTO.builder()
+                .userId(userId)
+                .username("未知用户")
+                .email("")
+                .build();
+    }
+
+    /**
+     * 清除用户缓存，并通知所有节点失效本地缓存
      */
     public void clearUserCache(Long userId) {
         String cacheKey = CACHE_PREFIX + userId;
         redisTemplate.delete(cacheKey);
+        localCache.invalidate(userId);
+        try {
+            stringRedisTemplate.convertAndSend(invalidationChannel, String.valueOf(userId));
+        } catch (Exception e) {
+            log.error("发送用户缓存失效通知失败: userId={}", userId, e);
+        }
+    }
+
+    /**
+     * 收到其他节点（或本节点）的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            localCache.invalidate(Long.parseLong(body.trim()));
+            log.debug("本地用户缓存失效: userId={}", body);
+        } catch (NumberFormatException e) {
+            log.warn("忽略无法解析的用户缓存失效通知: {}", body);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,152 @@
+package com.sg.nusiss.social.service.cache;
+
+import com.sg.nusiss.social.config.RedisConfig;
+import com.sg.nusiss.social.dto.message.response.MessageResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 最近消息缓存写入耗时基准（每条消息）
+ *
+ * 输出三种写法对同一个已满（超过 100 条）的群聊列表追加消息的实际耗时（只报告，不比较快慢；
+ * 只校验列表最终裁剪到 100 条）：
+ * - 旧写法：JSON 序列化，RPUSH、LLEN、LPOP、EXPIRE 四次往返
+ * - {@link MessageCacheService#cacheMessage}：二进制编码，一个管道中的 MULTI（一次往返）
+ * - {@link MessageCacheService#cacheMessages}：后台写线程按批写入，耗时按消息数平摊
+ *
+ * 需要 Redis，默认跳过（默认使用 15 号库，群聊ID为负数，结束后删除用到的 key）：
+ * mvn test -Dtest=MessageCacheLatencyBenchmarkTest -Dgamevault.it.redis-host=localhost -Dgamevault.it.redis-port=12003
+ */
+@EnabledIfSystemProperty(named = "gamevault.it.redis-host", matches = ".+")
+class MessageCacheLatencyBenchmarkTest {
+
+    private static final int WARMUP = 500;
+    private static final int MESSAGES = 5000;
+    private static final int BATCH_SIZE = 50;
+    private static final int CACHE_SIZE = 100;
+    private static final long CONVERSATION_ID = -System.nanoTime();
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, Object> jsonTemplate;
+    private static RedisTemplate<String, MessageResponse> messageTemplate;
+
+    @BeforeAll
+    static void connect() {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getProperty("gamevault.it.redis-host"),
+                Integer.parseInt(System.getProperty("gamevault.it.redis-port", "6379")));
+        configuration.setDatabase(Integer.parseInt(System.getProperty("gamevault.it.redis-database", "15")));
+        connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+
+        RedisConfig redisConfig = new RedisConfig();
+        jsonTemplate = redisConfig.redisTemplate(connectionFactory);
+        messageTemplate = redisConfig.messageRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        if (connectionFactory != null) {
+            jsonTemplate.delete(oldKey());
+            messageTemplate.delete("chat:messages:v2:" + CONVERSATION_ID);
+            connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    void writeCostPerMessage() {
+        MessageCacheService cacheService = new MessageCacheService(messageTemplate);
+
+        // 预热并填满列表，之后每次追加都要裁剪
+        for (int i = 0; i < WARMUP; i++) {
+            legacyCacheMessage(message(i));
+            cacheService.cacheMessage(message(i));
+        }
+
+        long[] legacy = new long[MESSAGES];
+        long[] single = new long[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            MessageResponse message = message(WARMUP + i);
+            long started = System.nanoTime();
+            legacyCacheMessage(message);
+            legacy[i] = System.nanoTime() - started;
+
+            started = System.nanoTime();
+            cacheService.cacheMessage(message);
+            single[i] = System.nanoTime() - started;
+        }
+
+        long batched = 0;
+        for (int i = 0; i < MESSAGES; i += BATCH_SIZE) {
+            List<MessageResponse> batch = new ArrayList<>(BATCH_SIZE);
+            for (int j = 0; j < BATCH_SIZE; j++) {
+                batch.add(message(WARMUP + MESSAGES + i + j));
+            }
+            long started = System.nanoTime();
+            cacheService.cacheMessages(batch);
+            batched += System.nanoTime() - started;
+        }
+        double batchedMicros = batched / 1_000.0 / MESSAGES;
+
+        System.out.printf("recent-message cache write per message - legacy (4 RTT, JSON): %s; "
+                        + "pipelined MULTI: %s; batched x%d: mean %.1f µs%n",
+                summary(legacy), summary(single), BATCH_SIZE, batchedMicros);
+
+        assertEquals(CACHE_SIZE, cacheService.getCachedMessages(CONVERSATION_ID, CACHE_SIZE * 2).size());
+    }
+
+    /**
+     * 优化前 MessageCacheService.cacheMessage 的写法（每条消息四次往返，JSON 值）
+     */
+    private static void legacyCacheMessage(MessageResponse message) {
+        String key = oldKey();
+        jsonTemplate.opsForList().rightPush(key, message);
+        Long size = jsonTemplate.opsForList().size(key);
+        if (size != null && size > CACHE_SIZE) {
+            jsonTemplate.opsForList().leftPop(key);
+        }
+        jsonTemplate.expire(key, 7, TimeUnit.DAYS);
+    }
+
+    private static String oldKey() {
+        return "chat:bench:legacy:" + CONVERSATION_ID;
+    }
+
+    private static MessageResponse message(long sequence) {
+        return MessageResponse.builder()
+                .id(1_000_000L + sequence)
+                .conversationId(CONVERSATION_ID)
+                .senderId(42L)
+                .senderUsername("alice")
+                .senderEmail("alice@example.com")
+                .content("benchmark message " + sequence)
+                .chatType("group")
+                .messageType("text")
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static double mean(long[] nanos) {
+        return Arrays.stream(nanos).average().orElse(0) / 1_000.0;
+    }
+
+    private static String summary(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format("mean %.1f µs, p50 %.1f µs, p99 %.1f µs", mean(nanos),
+                sorted[sorted.length / 2] / 1_000.0, sorted[(int) (sorted.length * 0.99)] / 1_000.0);
+    }
+}
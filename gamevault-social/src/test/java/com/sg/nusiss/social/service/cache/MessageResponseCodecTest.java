@@ -0,0 +1,141 @@
+package com.sg.nusiss.social.service.cache;
+
+import com.sg.nusiss.social.dto.message.response.MessageResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 缓存消息二进制编码的往返与异常输入
+ */
+class MessageResponseCodecTest {
+
+    private final MessageResponseCodec codec = new MessageResponseCodec();
+
+    @Test
+    void fullMessageRoundTrips() {
+        MessageResponse message = fileMessage();
+        assertEquals(message, roundTrip(message));
+    }
+
+    @Test
+    void allNullFieldsRoundTrip() {
+        MessageResponse decoded = roundTrip(new MessageResponse());
+        assertEquals(new MessageResponse(), decoded);
+        assertNull(decoded.getAttachment());
+    }
+
+    @Test
+    void attachmentWithAllNullFieldsIsKept() {
+        MessageResponse message = MessageResponse.builder()
+                .id(1L)
+                .messageType("file")
+                .attachment(new MessageResponse.FileAttachment())
+                .build();
+
+        MessageResponse decoded = roundTrip(message);
+        assertNotNull(decoded.getAttachment());
+        assertEquals(message, decoded);
+    }
+
+    @Test
+    void nonAsciiTextRoundTrips() {
+        MessageResponse message = MessageResponse.builder()
+                .id(2L)
+                .senderUsername("张三")
+                .senderEmail("zhang.san@例子.中国")
+                .content("你好，世界 👋🏽 — ünïcödé\n第二行\t制表符 é́ 𝄞")
+                .chatType("group")
+                .messageType("text")
+                .createdAt(LocalDateTime.of(2025, 10, 5, 12, 0, 1))
+                .build();
+        assertEquals(message, roundTrip(message));
+    }
+
+    @Test
+    void negativeAndLargeNumbersRoundTrip() {
+        MessageResponse message = MessageResponse.builder()
+                .id(Long.MAX_VALUE)
+                .conversationId(Long.MIN_VALUE)
+                .senderId(-1L)
+                .receiverId(0L)
+                .createdAt(LocalDateTime.of(1900, 1, 1, 0, 0, 0, 999_999_999))
+                .attachment(MessageResponse.FileAttachment.builder()
+                        .fileSize(Long.MAX_VALUE)
+                        .build())
+                .build();
+        assertEquals(message, roundTrip(message));
+
+        message.setCreatedAt(LocalDateTime.of(9999, 12, 31, 23, 59, 59, 1));
+        message.getAttachment().setFileSize(-42L);
+        assertEquals(message, roundTrip(message));
+    }
+
+    @Test
+    void nullAndEmptyInputs() {
+        assertNull(codec.serialize(null));
+        assertNull(codec.deserialize(null));
+        assertNull(codec.deserialize(new byte[0]));
+    }
+
+    @Test
+    void unknownVersionIsRejected() {
+        byte[] bytes = codec.serialize(fileMessage());
+        bytes[0] = (byte) (bytes[0] + 1);
+        assertThrows(SerializationException.class, () -> codec.deserialize(bytes));
+    }
+
+    @Test
+    void truncatedInputIsRejectedAtEveryLength() {
+        byte[] bytes = codec.serialize(fileMessage());
+        for (int length = 1; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(SerializationException.class, () -> codec.deserialize(truncated),
+                    "截断到 " + length + " 字节时应解码失败");
+        }
+    }
+
+    @Test
+    void corruptStringLengthIsRejected() {
+        MessageResponse message = MessageResponse.builder().content("hello").build();
+        byte[] bytes = codec.serialize(message);
+        // 版本(1) + 位图(1) + 长度(1)：把长度改成超过剩余字节数
+        bytes[2] = 0x7F;
+        assertThrows(SerializationException.class, () -> codec.deserialize(bytes));
+    }
+
+    private MessageResponse roundTrip(MessageResponse message) {
+        return codec.deserialize(codec.serialize(message));
+    }
+
+    private static MessageResponse fileMessage() {
+        return MessageResponse.builder()
+                .id(123_456_789L)
+                .conversationId(7L)
+                .senderId(42L)
+                .receiverId(43L)
+                .senderUsername("alice")
+                .senderEmail("alice@example.com")
+                .content("see attached")
+                .chatType("group")
+                .messageType("file")
+                .createdAt(LocalDateTime.of(2025, 10, 5, 12, 0, 1, 123_456_789))
+                .attachment(MessageResponse.FileAttachment.builder()
+                        .fileId("f-0001")
+                        .fileName("报告.pdf")
+                        .fileSize(99_999_999_999L)
+                        .fileType("document")
+                        .fileExt("pdf")
+                        .accessUrl("https://files.example.com/f-0001")
+                        .thumbnailUrl("https://files.example.com/f-0001/thumb")
+                        .build())
+                .build();
+    }
+}